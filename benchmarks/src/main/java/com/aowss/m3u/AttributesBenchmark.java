@@ -0,0 +1,36 @@
+package com.aowss.m3u;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class AttributesBenchmark {
+
+    String extinfAttributes = "tvg-id=\"ABCBoston.us\" tvg-name=\"ABC HD\" tvg-logo=\"http://149.56.14.45/Logo/2018/ABC.png\" group-title=\"US/CAN - Entertainment\"";
+    String attributes = "BANDWIDTH=1280000,AVERAGE-BANDWIDTH=1000000,RESOLUTION=640x360,FRAME-RATE=29.970,VIDEO-RANGE=SDR";
+    String streamInf = "#EXT-X-STREAM-INF:BANDWIDTH=1280000,AVERAGE-BANDWIDTH=1000000,CODECS=\"avc1.4d401f,mp4a.40.2\",RESOLUTION=640x360,FRAME-RATE=29.970,VIDEO-RANGE=SDR";
+    AttributeList attributeList = new AttributeList();
+
+    @Benchmark
+    public Map<String, String> parseAttributes() {
+        return MediaSegment.parseAttributes(extinfAttributes);
+    }
+
+    @Benchmark
+    public Map<String, String> attributesParser() {
+        return PlaylistParser.attributesParser.apply(",").apply(attributes);
+    }
+
+    @Benchmark
+    public long attributeList() {
+        attributeList.parse(streamInf, 18, streamInf.length());
+        return attributeList.getInt("BANDWIDTH", 0) + attributeList.getResolution("RESOLUTION").height();
+    }
+}
@@ -0,0 +1,56 @@
+package com.aowss.m3u;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//  Generated playlists shared by the benchmarks
+class Corpus {
+
+    static List<String> lines(String name) {
+        return switch (name) {
+            case "live" -> media(2680, 6, false);
+            case "vod" -> media(0, 100_000, true);
+            case "iptv" -> iptv(10_000);
+            case "master" -> master(300);
+            default -> throw new RuntimeException("Unknown corpus " + name);
+        };
+    }
+
+    static String content(String name) {
+        return String.join("\n", lines(name)) + "\n";
+    }
+
+    static List<String> media(long mediaSequence, int segments, boolean endList) {
+        List<String> lines = new ArrayList<>(2 * segments + 6);
+        lines.add("#EXTM3U");
+        lines.add("#EXT-X-VERSION:3");
+        lines.add("#EXT-X-TARGETDURATION:7");
+        lines.add("#EXT-X-MEDIA-SEQUENCE:" + mediaSequence);
+        for (long i = mediaSequence; i < mediaSequence + segments; i++) {
+            lines.add("#EXTINF:6.006,");
+            lines.add("https://cdn.example.com/channel/1080p/segment" + i + ".ts");
+        }
+        if (endList) lines.add("#EXT-X-ENDLIST");
+        return lines;
+    }
+
+    static List<String> iptv(int channels) {
+        List<String> lines = new ArrayList<>(2 * channels + 1);
+        lines.add("#EXTM3U");
+        for (int i = 0; i < channels; i++) {
+            lines.add("#EXTINF:-1 tvg-id=\"channel" + i + ".us\" tvg-name=\"Channel " + i + " HD\" tvg-logo=\"http://logos.example.com/" + i + ".png\" group-title=\"Group " + i % 20 + "\",Channel " + i + " HD");
+            lines.add("http://iptv.example.com:80/live/user/password/" + i + ".ts");
+        }
+        return lines;
+    }
+
+    static List<String> master(int variants) {
+        List<String> lines = new ArrayList<>(2 * variants + 1);
+        lines.add("#EXTM3U");
+        for (int i = 0; i < variants; i++) {
+            lines.add("#EXT-X-STREAM-INF:BANDWIDTH=" + (200_000 + i * 25_000) + ",AVERAGE-BANDWIDTH=" + (180_000 + i * 20_000) + ",CODECS=\"avc1.640028,mp4a.40.2\",RESOLUTION=1920x1080,FRAME-RATE=29.970,VIDEO-RANGE=SDR");
+            lines.add("https://cdn.example.com/channel/variant" + i + "/index.m3u8");
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,28 @@
+package com.aowss.m3u;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class MediaSegmentBenchmark {
+
+    Line extinf = new Line(5, "#EXTINF:6.006,");
+    Line iptvExtinf = new Line(2, "#EXTINF:-1 tvg-id=\"ABCBoston.us\" tvg-name=\"ABC HD\" tvg-logo=\"http://149.56.14.45/Logo/2018/ABC.png\" group-title=\"US/CAN - Entertainment\",ABC HD");
+    Line uri = new Line(6, "https://cdn.example.com/channel/1080p/segment2680.ts");
+
+    @Benchmark
+    public MediaSegment parse() {
+        return MediaSegment.parse(extinf, uri);
+    }
+
+    @Benchmark
+    public MediaSegment parseWithAttributes() {
+        return MediaSegment.parse(iptvExtinf, uri);
+    }
+}
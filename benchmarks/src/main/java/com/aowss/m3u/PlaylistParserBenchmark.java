@@ -0,0 +1,40 @@
+package com.aowss.m3u;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class PlaylistParserBenchmark {
+
+    @Param({ "live", "vod", "iptv", "master" })
+    String corpus;
+
+    List<String> lines;
+    ByteBuffer bytes;
+
+    @Setup
+    public void setUp() {
+        lines = Corpus.lines(corpus);
+        bytes = ByteBuffer.wrap(Corpus.content(corpus).getBytes(UTF_8));
+    }
+
+    @Benchmark
+    public Playlist parse() {
+        return PlaylistParser.parse.apply(lines.stream());
+    }
+
+    @Benchmark
+    public Playlist parseBuffer() {
+        return PlaylistParser.parseBuffer.apply(bytes.duplicate());
+    }
+}
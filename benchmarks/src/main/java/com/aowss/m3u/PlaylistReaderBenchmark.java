@@ -0,0 +1,48 @@
+package com.aowss.m3u;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class PlaylistReaderBenchmark {
+
+    @Param({ "live", "vod", "iptv", "master" })
+    String corpus;
+
+    Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile(corpus, ".m3u8");
+        Files.writeString(file, Corpus.content(corpus));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Playlist fromFile() {
+        return PlaylistReader.fromFile.apply(file);
+    }
+
+    @Benchmark
+    public Playlist fromMappedFile() {
+        return PlaylistReader.fromMappedFile.apply(file);
+    }
+
+    @Benchmark
+    public Playlist fromFileDetectingCharset() {
+        return PlaylistReader.fromFileDetectingCharset.apply(file);
+    }
+}
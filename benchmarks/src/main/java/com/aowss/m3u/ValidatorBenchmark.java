@@ -0,0 +1,31 @@
+package com.aowss.m3u;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class ValidatorBenchmark {
+
+    @Param({ "live", "vod", "iptv", "master" })
+    String corpus;
+
+    List<String> lines;
+
+    @Setup
+    public void setUp() {
+        lines = Corpus.lines(corpus);
+    }
+
+    @Benchmark
+    public void validate(Blackhole blackhole) {
+        Validator.validate.apply(lines.stream()).forEach(blackhole::consume);
+    }
+}
@@ -0,0 +1,139 @@
+package com.aowss.m3u;
+
+import java.util.Arrays;
+
+import static com.aowss.m3u.CharSequences.*;
+
+//  Attribute lists from https://tools.ietf.org/html/rfc8216#section-4.2
+//  Only the offsets of the names and values are recorded : values are converted when they are read and the instance can be reused for the next tag
+public class AttributeList {
+
+    private CharSequence content;
+    private int size;
+    private int[] offsets = new int[4 * 16];
+
+    public AttributeList parse(CharSequence content, int from, int to) {
+        this.content = content;
+        this.size = 0;
+        int i = from;
+        while (i < to) {
+            int nameStart = i;
+            while (i < to && content.charAt(i) != '=') {
+                char c = content.charAt(i);
+                if (!(c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-')) throw new RuntimeException("An attribute name can only contain the following characters: [A..Z], [0..9] and '-'");
+                i++;
+            }
+            if (i == to || i == nameStart) throw new RuntimeException("An attribute should have a name and a value separated by '='");
+            int nameEnd = i++;
+            int valueStart = i;
+            if (i < to && content.charAt(i) == '"') {
+                i = CharSequences.indexOf(content, '"', i + 1, to);
+                if (i == -1) throw new RuntimeException("A quoted-string attribute value must end with '\"'");
+                i++;
+            } else {
+                while (i < to && content.charAt(i) != ',') i++;
+            }
+            if (i == valueStart) throw new RuntimeException("The attribute value is mandatory");
+            add(nameStart, nameEnd, valueStart, i);
+            if (i < to && content.charAt(i) != ',') throw new RuntimeException("Attributes must be separated by ','");
+            i++;
+        }
+        return this;
+    }
+
+    private void add(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        if (offsets.length < 4 * (size + 1)) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        int i = 4 * size++;
+        offsets[i] = nameStart;
+        offsets[i + 1] = nameEnd;
+        offsets[i + 2] = valueStart;
+        offsets[i + 3] = valueEnd;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String name(int index) {
+        return substring(content, offsets[4 * index], offsets[4 * index + 1]);
+    }
+
+    public String value(int index) {
+        return substring(content, offsets[4 * index + 2], offsets[4 * index + 3]);
+    }
+
+    private int find(String name) {
+        for (int i = 0; i < size; i++) {
+            int start = offsets[4 * i];
+            int end = offsets[4 * i + 1];
+            if (end - start == name.length() && regionMatches(start, name)) return i;
+        }
+        return -1;
+    }
+
+    private boolean regionMatches(int start, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (content.charAt(start + i) != value.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    public boolean has(String name) {
+        return find(name) != -1;
+    }
+
+    public long getInt(String name, long defaultValue) {
+        int i = find(name);
+        if (i == -1) return defaultValue;
+        try {
+            return decimalInteger(content, offsets[4 * i + 2], offsets[4 * i + 3]);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("The " + name + " attribute must be a decimal-integer", e);
+        }
+    }
+
+    public double getDecimal(String name, double defaultValue) {
+        int i = find(name);
+        if (i == -1) return defaultValue;
+        try {
+            return decimal(content, offsets[4 * i + 2], offsets[4 * i + 3]);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("The " + name + " attribute must be a decimal-floating-point", e);
+        }
+    }
+
+    public Resolution getResolution(String name) {
+        int i = find(name);
+        if (i == -1) return null;
+        int start = offsets[4 * i + 2];
+        int end = offsets[4 * i + 3];
+        int x = CharSequences.indexOf(content, 'x', start, end);
+        try {
+            if (x == -1) throw new NumberFormatException();
+            return new Resolution((int) decimalInteger(content, start, x), (int) decimalInteger(content, x + 1, end));
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("The " + name + " attribute must be a decimal-resolution", e);
+        }
+    }
+
+    public String getQuotedString(String name) {
+        int i = find(name);
+        if (i == -1) return null;
+        int start = offsets[4 * i + 2];
+        int end = offsets[4 * i + 3];
+        if (content.charAt(start) != '"') throw new RuntimeException("The " + name + " attribute must be a quoted-string");
+        return substring(content, start + 1, end - 1);
+    }
+
+    public String getEnumeratedString(String name) {
+        int i = find(name);
+        if (i == -1) return null;
+        return substring(content, offsets[4 * i + 2], offsets[4 * i + 3]);
+    }
+
+    //  Compares an enumerated-string without materializing it
+    public boolean is(String name, String value) {
+        int i = find(name);
+        return i != -1 && offsets[4 * i + 3] - offsets[4 * i + 2] == value.length() && regionMatches(offsets[4 * i + 2], value);
+    }
+}
@@ -0,0 +1,101 @@
+package com.aowss.m3u;
+
+class CharSequences {
+
+    private static final float[] POWERS_OF_TEN = { 1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+    private static final double[] DOUBLE_POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    static boolean startsWith(CharSequence content, String prefix) {
+        if (content.length() < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (content.charAt(i) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    static boolean contentEquals(CharSequence content, String value) {
+        return content.length() == value.length() && startsWith(content, value);
+    }
+
+    static int indexOf(CharSequence content, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (content.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    static int lastIndexOf(CharSequence content, char c, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (content.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    static int trimStart(CharSequence content, int from, int to) {
+        while (from < to && content.charAt(from) <= ' ') from++;
+        return from;
+    }
+
+    static int trimEnd(CharSequence content, int from, int to) {
+        while (to > from && content.charAt(to - 1) <= ' ') to--;
+        return to;
+    }
+
+    static String substring(CharSequence content, int from, int to) {
+        return from == to ? "" : content.subSequence(from, to).toString();
+    }
+
+    static long decimalInteger(CharSequence content, int from, int to) {
+        return Long.parseLong(content, from, to, 10);
+    }
+
+    //  Exact for up to 24 bits of mantissa and 10 fractional digits since both operands are then exactly representable as floats
+    static float decimalFloatingPoint(CharSequence content, int from, int to) {
+        int i = from;
+        boolean negative = i < to && content.charAt(i) == '-';
+        if (negative) i++;
+        long mantissa = 0;
+        int fractionDigits = -1;
+        for (; i < to; i++) {
+            char c = content.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                if (fractionDigits >= 0) fractionDigits++;
+                if (mantissa > 1 << 24 || fractionDigits >= POWERS_OF_TEN.length) break;
+            } else if (c == '.' && fractionDigits == -1) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        boolean digits = i > from + (negative ? 1 : 0) + (fractionDigits > 0 ? 1 : 0);
+        if (i < to || !digits || fractionDigits == 0) return Float.parseFloat(substring(content, from, to));
+        float value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    //  Same fast path with 53 bits of mantissa and 22 fractional digits
+    static double decimal(CharSequence content, int from, int to) {
+        int i = from;
+        boolean negative = i < to && content.charAt(i) == '-';
+        if (negative) i++;
+        long mantissa = 0;
+        int fractionDigits = -1;
+        for (; i < to; i++) {
+            char c = content.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                if (fractionDigits >= 0) fractionDigits++;
+                if (mantissa > 1L << 53 || fractionDigits >= DOUBLE_POWERS_OF_TEN.length) break;
+            } else if (c == '.' && fractionDigits == -1) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        boolean digits = i > from + (negative ? 1 : 0) + (fractionDigits > 0 ? 1 : 0);
+        if (i < to || !digits || fractionDigits == 0) return Double.parseDouble(substring(content, from, to));
+        double value = fractionDigits > 0 ? mantissa / DOUBLE_POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,69 @@
+package com.aowss.m3u;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//  Canonical instances of the titles, attribute names and values, attribute maps and URIs repeated across segments
+//  Each kind of value is kept in its own table, least recently used values are dropped once a table holds the maximum number of values
+//  Its lifetime is the one of the parse or of the cache it is given to, so the values it keeps can't outlive them
+public class Deduplicator {
+
+    private final Map<String, String> strings;
+    private final Map<Map<String, String>, Map<String, String>> attributes;
+    private final Map<URI, URI> uris;
+
+    public Deduplicator(int maximumSize) {
+        if (maximumSize < 1) throw new RuntimeException("The deduplicator must be able to hold at least one value");
+        this.strings = table(maximumSize);
+        this.attributes = table(maximumSize);
+        this.uris = table(maximumSize);
+    }
+
+    private static <T> Map<T, T> table(int maximumSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<T, T> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    public synchronized String string(String value) {
+        if (value == null) return value;
+        String canonical = strings.putIfAbsent(value, value);
+        return canonical != null ? canonical : value;
+    }
+
+    //  The canonical map is immutable and its names and values are canonical too
+    public synchronized Map<String, String> attributes(Map<String, String> value) {
+        if (value.isEmpty()) return value;
+        Map<String, String> canonical = attributes.get(value);
+        if (canonical != null) return canonical;
+        Map<String, String> entries = new HashMap<>(value.size() * 2);
+        for (Map.Entry<String, String> entry : value.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) return value;
+            entries.put(string(entry.getKey()), string(entry.getValue()));
+        }
+        canonical = Map.copyOf(entries);
+        attributes.put(canonical, canonical);
+        return canonical;
+    }
+
+    public synchronized URI uri(URI value) {
+        if (value == null) return value;
+        URI canonical = uris.putIfAbsent(value, value);
+        //  URIs that only differ by the case of their scheme, host or escaped octets are equal but must still be written as they were read
+        return canonical != null && canonical.toString().equals(value.toString()) ? canonical : value;
+    }
+
+    public synchronized MediaSegment segment(MediaSegment segment) {
+        return new MediaSegment(segment.duration(), attributes(segment.attributes()), string(segment.title()), uri(segment.uri()));
+    }
+
+    //  Number of values kept, all kinds included
+    public synchronized int size() {
+        return strings.size() + attributes.size() + uris.size();
+    }
+}
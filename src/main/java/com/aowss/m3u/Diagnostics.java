@@ -0,0 +1,83 @@
+package com.aowss.m3u;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//  Where the rules broken by a playlist are reported
+//  The strict diagnostics throw on the first one, others collect them, without any exception, until their limit is reached
+public class Diagnostics {
+
+    public enum Rule {
+        BOM("4.1"),
+        NOT_UTF8("4.1"),
+        INVALID_LINE("4.1"),
+        INVALID_CHARACTERS("4.1"),
+        NOT_NFC_NORMALIZED("4.1"),
+        MIXED_PLAYLIST("4.1"),
+        INVALID_DECIMAL_INTEGER("4.2"),
+        NO_EXTM3U("4.3.1.1"),
+        MISSING_URI("4.3.2.1"),
+        URI_WITHOUT_TAG("4.3.2.1"),
+        MALFORMED_TAG("4.3");
+
+        private final String section;
+
+        Rule(String section) {
+            this.section = section;
+        }
+
+        //  Section of https://tools.ietf.org/html/rfc8216
+        public String section() {
+            return section;
+        }
+    }
+
+    public record Diagnostic(long lineNumber, Rule rule, String message) {
+        public String section() {
+            return rule.section();
+        }
+    }
+
+    //  Shared by every thread : it throws before it records anything, so it holds no state
+    static final Diagnostics STRICT = new Diagnostics(0, true);
+
+    private final int limit;
+    private final boolean strict;
+    private final List<Diagnostic> diagnostics;
+
+    public Diagnostics(int limit) {
+        this(limit, false);
+        if (limit <= 0) throw new RuntimeException("The limit must be positive");
+    }
+
+    private Diagnostics(int limit, boolean strict) {
+        this.limit = limit;
+        this.strict = strict;
+        this.diagnostics = strict ? List.of() : new ArrayList<>();
+    }
+
+    public List<Diagnostic> list() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+
+    //  Parsing stops once the limit is reached
+    public boolean limitReached() {
+        return diagnostics.size() >= limit && !strict;
+    }
+
+    //  For diagnostics reused from one playlist to the next
+    void clear() {
+        if (!strict) diagnostics.clear();
+    }
+
+    boolean strict() {
+        return strict;
+    }
+
+    void report(long lineNumber, Rule rule, String message) {
+        Instrumentation.rejected(rule);
+        if (strict) throw new RuntimeException(message);
+        if (diagnostics.size() < limit) diagnostics.add(new Diagnostic(lineNumber, rule, message));
+    }
+}
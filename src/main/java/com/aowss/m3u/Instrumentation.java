@@ -0,0 +1,27 @@
+package com.aowss.m3u;
+
+import com.aowss.m3u.Diagnostics.Rule;
+
+import java.util.ServiceLoader;
+
+//  The metrics are looked up once per playlist : without any, the playlists are parsed exactly as before, without a single clock read
+public class Instrumentation {
+
+    private static volatile PlaylistMetrics metrics = ServiceLoader.load(PlaylistMetrics.class).findFirst().orElse(null);
+
+    //  null disables the instrumentation
+    public static void install(PlaylistMetrics installed) {
+        metrics = installed;
+    }
+
+    static PlaylistMetrics metrics() {
+        return metrics;
+    }
+
+    //  Only called when a rule is broken, so it is never on the path of a valid line
+    static void rejected(Rule rule) {
+        PlaylistMetrics current = metrics;
+        if (current != null) current.rejected(rule);
+    }
+
+}
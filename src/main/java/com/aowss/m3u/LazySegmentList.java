@@ -0,0 +1,76 @@
+package com.aowss.m3u;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+//  The segments of a playlist read from a buffer, kept as the offsets of their lines until they are indexed
+//  The durations are parsed during the scan and summed up so that finding the segment playing at a given time is a binary search
+public class LazySegmentList extends AbstractList<MediaSegment> implements RandomAccess {
+
+    private final ByteBuffer buffer;
+    private int size;
+    //  Start and end of the EXTINF line followed by start and end of the URI line, for each segment
+    private int[] offsets = new int[4 * 64];
+    //  End time of each segment, i.e. the sum of its duration and of the durations of all the segments before it
+    private double[] endTimes = new double[64];
+
+    LazySegmentList(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    void tag(int start, int end, float duration) {
+        if (size == endTimes.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            endTimes = Arrays.copyOf(endTimes, endTimes.length * 2);
+        }
+        offsets[4 * size] = start;
+        offsets[4 * size + 1] = end;
+        endTimes[size] = startTime(size) + duration;
+    }
+
+    void uri(int start, int end) {
+        offsets[4 * size + 2] = start;
+        offsets[4 * size + 3] = end;
+        size++;
+    }
+
+    @Override
+    public MediaSegment get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        return MediaSegment.parse(line(offsets[4 * index], offsets[4 * index + 1]), URI.create(line(offsets[4 * index + 2], offsets[4 * index + 3])));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public double duration() {
+        return startTime(size);
+    }
+
+    public double startTime(int index) {
+        return index == 0 ? 0 : endTimes[index - 1];
+    }
+
+    //  The index of the segment playing at the given time, -1 if the time is outside of the playlist
+    public int indexAt(double time) {
+        if (time < 0 || time >= duration()) return -1;
+        int low = 0, high = size - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (endTimes[middle] > time) high = middle;
+            else low = middle + 1;
+        }
+        return low;
+    }
+
+    private String line(int start, int end) {
+        return UTF_8.decode(buffer.slice(start, end - start)).toString();
+    }
+}
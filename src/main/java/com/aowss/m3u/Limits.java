@@ -0,0 +1,60 @@
+package com.aowss.m3u;
+
+import java.time.Duration;
+
+//  Hard limits for playlists coming from untrusted origins : reading stops with an error as soon as one of them is exceeded, even when the diagnostics don't throw
+//  Line lengths are in bytes, terminator excluded, segments include variant streams, and the deadline runs from the request or the opening of the file
+public record Limits(long maxBytes, int maxLineLength, int maxSegments, int maxAttributes, Duration deadline) {
+
+    public static final Limits NONE = new Limits(Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, null);
+
+    public Limits {
+        if (maxBytes < 1 || maxLineLength < 1 || maxSegments < 1 || maxAttributes < 1) throw new RuntimeException("The limits must be positive");
+        if (deadline != null && (deadline.isNegative() || deadline.isZero())) throw new RuntimeException("The deadline must be positive");
+    }
+
+    public Limits withMaxBytes(long maxBytes) {
+        return new Limits(maxBytes, maxLineLength, maxSegments, maxAttributes, deadline);
+    }
+
+    public Limits withMaxLineLength(int maxLineLength) {
+        return new Limits(maxBytes, maxLineLength, maxSegments, maxAttributes, deadline);
+    }
+
+    public Limits withMaxSegments(int maxSegments) {
+        return new Limits(maxBytes, maxLineLength, maxSegments, maxAttributes, deadline);
+    }
+
+    public Limits withMaxAttributes(int maxAttributes) {
+        return new Limits(maxBytes, maxLineLength, maxSegments, maxAttributes, deadline);
+    }
+
+    public Limits withDeadline(Duration deadline) {
+        return new Limits(maxBytes, maxLineLength, maxSegments, maxAttributes, deadline);
+    }
+
+    void bytes(long count) {
+        if (count > maxBytes) throw new RuntimeException("The playlist exceeds the limit of " + maxBytes + " bytes");
+    }
+
+    void lineLength(long lineNumber, int length) {
+        if (length > maxLineLength) throw new RuntimeException("Line " + lineNumber + " exceeds the limit of " + maxLineLength + " bytes");
+    }
+
+    void segments(long lineNumber, long count) {
+        if (count > maxSegments) throw new RuntimeException("Line " + lineNumber + " : the playlist exceeds the limit of " + maxSegments + " segments");
+    }
+
+    void attributes(long lineNumber, int count) {
+        if (count > maxAttributes) throw new RuntimeException("Line " + lineNumber + " : the tag exceeds the limit of " + maxAttributes + " attributes");
+    }
+
+    //  In System.nanoTime() terms, to be compared by subtraction
+    long deadline(long start) {
+        return start + (deadline == null ? Long.MAX_VALUE / 2 : deadline.toNanos());
+    }
+
+    void expired(long deadline) {
+        if (this.deadline != null && System.nanoTime() - deadline > 0) throw new RuntimeException("The playlist wasn't read within its deadline of " + this.deadline.toMillis() + "ms");
+    }
+}
@@ -1,3 +1,11 @@
 package com.aowss.m3u;
 
-public record Line(long lineNumber, String content) {}
+import java.net.URI;
+
+//  The URI is the one built while validating a URI line so that it isn't parsed a second time
+public record Line(long lineNumber, String content, URI uri) {
+
+    public Line(long lineNumber, String content) {
+        this(lineNumber, content, null);
+    }
+}
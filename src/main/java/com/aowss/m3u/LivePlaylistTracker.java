@@ -0,0 +1,58 @@
+package com.aowss.m3u;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class LivePlaylistTracker {
+
+    public record Delta(MediaPlaylist playlist, List<MediaSegment> added, List<MediaSegment> removed) {}
+
+    private final URI uri;
+    private volatile MediaPlaylist current;
+
+    public LivePlaylistTracker(URI uri) {
+        this.uri = uri;
+    }
+
+    public MediaPlaylist current() {
+        return current;
+    }
+
+    //  The playlist is downloaded before the lock is taken : a slow origin only holds up the refreshes that are parsing
+    public Delta refresh() {
+        List<String> lines = PlaylistReader.download.apply(uri);
+        return refresh(lines.stream());
+    }
+
+    public synchronized Delta refresh(Stream<String> content) {
+        return update(PlaylistParser.refresh.apply(current).apply(content));
+    }
+
+    private Delta update(Playlist playlist) {
+        if (!(playlist instanceof MediaPlaylist latest)) throw new RuntimeException("Only media playlists can be tracked");
+        var previous = current;
+        current = latest;
+        if (previous == null) return new Delta(latest, latest.segments(), List.of());
+        List<MediaSegment> segments = previous.segments();
+        long previousEnd = previous.mediaSequence() + segments.size();
+        //  The origin restarted its media sequence numbering : nothing can be carried over
+        if (latest.mediaSequence() < previous.mediaSequence()) return new Delta(latest, latest.segments(), segments);
+        int removed = (int) Math.min(latest.mediaSequence() - previous.mediaSequence(), segments.size());
+        int kept = (int) Math.max(0, Math.min(previousEnd - latest.mediaSequence(), latest.segments().size()));
+        //  A media sequence number that now points to a different URI means the origin started over : its old and new segments are in the delta too
+        List<MediaSegment> replaced = new ArrayList<>(), replacing = new ArrayList<>();
+        for (int i = 0; i < kept; i++) {
+            MediaSegment before = segments.get(removed + i), after = latest.segments().get(i);
+            if (before != after && !before.uri().equals(after.uri())) {
+                replaced.add(before);
+                replacing.add(after);
+            }
+        }
+        if (replaced.isEmpty()) return new Delta(latest, latest.segments().subList(kept, latest.segments().size()), segments.subList(0, removed));
+        replaced.addAll(0, segments.subList(0, removed));
+        replacing.addAll(latest.segments().subList(kept, latest.segments().size()));
+        return new Delta(latest, replacing, replaced);
+    }
+}
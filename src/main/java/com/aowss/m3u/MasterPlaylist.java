@@ -0,0 +1,10 @@
+package com.aowss.m3u;
+
+import java.util.List;
+
+public record MasterPlaylist(long length, List<VariantStream> variants, List<Rendition> renditions) implements Playlist {
+
+    public MasterPlaylist(long length, List<VariantStream> variants) {
+        this(length, variants, List.of());
+    }
+}
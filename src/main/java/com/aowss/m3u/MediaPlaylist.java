@@ -0,0 +1,6 @@
+package com.aowss.m3u;
+
+import java.util.List;
+
+public record MediaPlaylist(long length, long targetDuration, long mediaSequence, boolean endList, List<MediaSegment> segments) implements Playlist {
+}
@@ -4,39 +4,60 @@ import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
 
+import static com.aowss.m3u.CharSequences.*;
+
 public record MediaSegment(float duration, Map<String, String> attributes, String title, URI uri) {
 
     static MediaSegment parse(Line extinfTag, Line uri) {
         if (extinfTag == null || uri == null || extinfTag.content().isBlank() || uri.content().isBlank()) throw new RuntimeException("A media segment must have an EXTINF tag and a URI");
-        String tag = extinfTag.content();
-        if (!tag.startsWith("#EXTINF:")) throw new RuntimeException("A media segment must start with an EXTINF tag");
-        int firstComma = tag.indexOf(',');
-        int firstSpace = tag.indexOf(' ');
+        return parse(extinfTag.content(), URI.create(uri.content()));
+    }
+
+    static MediaSegment parse(CharSequence tag, URI uri) {
+        if (!startsWith(tag, "#EXTINF:")) throw new RuntimeException("A media segment must start with an EXTINF tag");
+        int length = tag.length();
+        int firstComma = indexOf(tag, ',', 8, length);
+        int firstSpace = indexOf(tag, ' ', 8, length);
         boolean noAttributes = firstSpace == -1 || firstComma < firstSpace;
         int durationEnd = noAttributes ? firstComma : firstSpace;
-        int titleStart = tag.lastIndexOf(',');
-        float duration = Float.valueOf(tag.substring(8, durationEnd));
-        String title = tag.substring(titleStart + 1).trim();
-        URI link = URI.create(uri.content());
-        Map<String, String> attributes = noAttributes ? Map.of() : parseAttributes(tag.substring(durationEnd, titleStart).trim());
-        return new MediaSegment(duration, attributes, title, link);
+        int titleStart = lastIndexOf(tag, ',', 0, length);
+        if (durationEnd == -1) throw new RuntimeException("The EXTINF tag must have a duration followed by a comma");
+        float duration = decimalFloatingPoint(tag, 8, durationEnd);
+        String title = substring(tag, trimStart(tag, titleStart + 1, length), trimEnd(tag, titleStart + 1, length));
+        Map<String, String> attributes = noAttributes ? Map.of() : parseAttributes(tag, durationEnd, titleStart);
+        return new MediaSegment(duration, attributes, title, uri);
+    }
+
+    //  Only reads the duration, with the same checks as a full parse
+    static float duration(CharSequence tag) {
+        if (!startsWith(tag, "#EXTINF:")) throw new RuntimeException("A media segment must start with an EXTINF tag");
+        int length = tag.length();
+        int firstComma = indexOf(tag, ',', 8, length);
+        int firstSpace = indexOf(tag, ' ', 8, length);
+        int durationEnd = firstSpace == -1 || firstComma < firstSpace ? firstComma : firstSpace;
+        if (durationEnd == -1) throw new RuntimeException("The EXTINF tag must have a duration followed by a comma");
+        return decimalFloatingPoint(tag, 8, durationEnd);
+    }
+
+    static Map<String, String> parseAttributes(String attributesList) {
+        return parseAttributes(attributesList, 0, attributesList.length());
     }
 
-    static Map<String, String> parseAttributes(String attributesList)  {
+    static Map<String, String> parseAttributes(CharSequence attributesList, int from, int to)  {
         Map<String, String> attributes = new HashMap<>();
         int start = -1;
         String name = null;
         boolean quoted = false;
-        for (int i = 0; i < attributesList.length(); i++) {
+        for (int i = from; i < to; i++) {
             switch (attributesList.charAt(i)) {
                 case ' ' -> {
                     if (start != -1) {
                         if (name == null) {
-                            name = attributesList.substring(start, i);
+                            name = substring(attributesList, start, i);
                             start = -1;
                         } else {
                             if (!quoted) {
-                                attributes.put(name, attributesList.substring(start, i));
+                                attributes.put(name, substring(attributesList, start, i));
                                 name = null;
                                 start = -1;
                             }
@@ -45,13 +66,13 @@ public record MediaSegment(float duration, Map<String, String> attributes, Strin
                 }
                 case '=' -> {
                     if (name == null) {
-                        name = attributesList.substring(start, i);
+                        name = substring(attributesList, start, i);
                         start = -1;
                     }
                 }
                 case '"' -> {
                     if (quoted) {
-                        attributes.put(name, attributesList.substring(start, i));
+                        attributes.put(name, start == -1 ? "" : substring(attributesList, start, i));
                         name = null;
                         start = -1;
                         quoted = false;
@@ -65,7 +86,7 @@ public record MediaSegment(float duration, Map<String, String> attributes, Strin
             }
         }
         if (name != null) {
-            attributes.put(name, attributesList.substring(start));
+            attributes.put(name, substring(attributesList, start, trimEnd(attributesList, start, to)));
         }
         return attributes;
     }
@@ -0,0 +1,93 @@
+package com.aowss.m3u;
+
+import com.aowss.m3u.Diagnostics.Rule;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+//  Counters, and a latency histogram per stage whose buckets are powers of two nanoseconds
+public class MetricsRecorder implements PlaylistMetrics {
+
+    //  Bucket i counts the latencies between 2^(i-1) inclusive and 2^i exclusive, bucket 0 the latencies of 0ns
+    public record Histogram(long count, long total, long[] buckets) {
+
+        public long mean() {
+            return count == 0 ? 0 : total / count;
+        }
+
+        //  Upper bound of the bucket holding the given percentile, in nanoseconds
+        public long percentile(double percentile) {
+            if (percentile < 0 || percentile > 100) throw new RuntimeException("The percentile must be between 0 and 100");
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) return i == 0 ? 0 : i == 63 ? Long.MAX_VALUE : 1L << i;
+            }
+            return 0;
+        }
+    }
+
+    public record Statistics(Map<Stage, Histogram> stages, long bytes, long lines, long segments, Map<Rule, Long> rejected) {}
+
+    private final Map<Stage, AtomicLongArray> buckets = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAdder> totals = new EnumMap<>(Stage.class);
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder lines = new LongAdder();
+    private final LongAdder segments = new LongAdder();
+    private final Map<Rule, LongAdder> rejected = new EnumMap<>(Rule.class);
+
+    public MetricsRecorder() {
+        for (Stage stage : Stage.values()) {
+            buckets.put(stage, new AtomicLongArray(64));
+            totals.put(stage, new LongAdder());
+        }
+        for (Rule rule : Rule.values()) rejected.put(rule, new LongAdder());
+    }
+
+    @Override
+    public void time(Stage stage, long nanos) {
+        long latency = Math.max(nanos, 0);
+        buckets.get(stage).incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(latency), 63));
+        totals.get(stage).add(latency);
+    }
+
+    @Override
+    public void bytes(long count) {
+        bytes.add(count);
+    }
+
+    @Override
+    public void lines(long count) {
+        lines.add(count);
+    }
+
+    @Override
+    public void segments(long count) {
+        segments.add(count);
+    }
+
+    @Override
+    public void rejected(Rule rule) {
+        rejected.get(rule).increment();
+    }
+
+    public Statistics statistics() {
+        Map<Stage, Histogram> stages = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            AtomicLongArray counts = buckets.get(stage);
+            long[] snapshot = new long[counts.length()];
+            long count = 0;
+            for (int i = 0; i < snapshot.length; i++) count += snapshot[i] = counts.get(i);
+            stages.put(stage, new Histogram(count, totals.get(stage).sum(), snapshot));
+        }
+        Map<Rule, Long> rules = new EnumMap<>(Rule.class);
+        rejected.forEach((rule, count) -> {
+            if (count.sum() > 0) rules.put(rule, count.sum());
+        });
+        return new Statistics(Map.copyOf(stages), bytes.sum(), lines.sum(), segments.sum(), Map.copyOf(rules));
+    }
+
+}
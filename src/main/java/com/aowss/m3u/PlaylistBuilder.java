@@ -0,0 +1,347 @@
+package com.aowss.m3u;
+
+import com.aowss.m3u.Diagnostics.Rule;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.aowss.m3u.CharSequences.contentEquals;
+import static com.aowss.m3u.CharSequences.startsWith;
+
+class PlaylistBuilder implements Consumer<Line> {
+
+    private long length;
+    private long targetDuration;
+    private boolean hasTargetDuration;
+    private long mediaSequence;
+    private boolean hasMediaSequence;
+    private boolean endList;
+    private long pendingLineNumber;
+    private String pendingTag;
+    private MediaSegment pendingSegment;
+    private VariantStream pendingVariant;
+    private List<MediaSegment> segments = new ArrayList<>();
+    private List<VariantStream> variants = new ArrayList<>();
+    private List<Rendition> renditions = new ArrayList<>();
+    private final MediaPlaylist previous;
+    private final AttributeList attributes = new AttributeList();
+    private final AttributeList renditionAttributes = new AttributeList();
+    private final LazySegmentList lazySegments;
+    private boolean pendingLazySegment;
+    private final Diagnostics diagnostics;
+    private final Deduplicator deduplicator;
+    private final SegmentStore segmentStore;
+    private Limits limits = Limits.NONE;
+    private long count;
+
+    PlaylistBuilder() {
+        this(null, null, Diagnostics.STRICT, null, null);
+    }
+
+    //  Segments already present in the previous playlist, according to their media sequence number, are reused instead of being parsed again
+    PlaylistBuilder(MediaPlaylist previous) {
+        this(previous, null, Diagnostics.STRICT, null, null);
+    }
+
+    //  When the diagnostics don't throw, a tag or URI that breaks a rule is dropped and the next lines are still used
+    PlaylistBuilder(Diagnostics diagnostics) {
+        this(null, null, diagnostics, null, null);
+    }
+
+    //  Segments are only recorded as offsets in the buffer, they are parsed when they are indexed
+    PlaylistBuilder(LazySegmentList lazySegments, Diagnostics diagnostics) {
+        this(null, lazySegments, diagnostics, null, null);
+    }
+
+    //  Segments share the titles, attributes and URIs they have in common with the segments seen before them
+    PlaylistBuilder(Deduplicator deduplicator, Diagnostics diagnostics) {
+        this(null, null, diagnostics, deduplicator, null);
+    }
+
+    //  Segments are stored in columns, along with what the other media segment tags say about them
+    PlaylistBuilder(SegmentStore segmentStore, Diagnostics diagnostics) {
+        this(null, null, diagnostics, null, segmentStore);
+    }
+
+    private PlaylistBuilder(MediaPlaylist previous, LazySegmentList lazySegments, Diagnostics diagnostics, Deduplicator deduplicator, SegmentStore segmentStore) {
+        this.previous = previous;
+        this.lazySegments = lazySegments;
+        this.diagnostics = diagnostics;
+        this.deduplicator = deduplicator;
+        this.segmentStore = segmentStore;
+    }
+
+    //  Segments, variant streams and attributes beyond the limits throw, whatever the diagnostics
+    PlaylistBuilder limit(Limits limits) {
+        this.limits = limits;
+        return this;
+    }
+
+    @Override
+    public void accept(Line line) {
+        accept(line.lineNumber(), line.content(), line.uri());
+    }
+
+    void accept(PlaylistTokenizer tokenizer) {
+        if (lazySegments != null && startsWith(tokenizer, "#EXTINF:")) {
+            length++;
+            pending(tokenizer.lineNumber());
+            float duration;
+            try {
+                duration = MediaSegment.duration(tokenizer);
+            } catch (RuntimeException e) {
+                malformed(tokenizer.lineNumber(), e);
+                return;
+            }
+            //  The attributes can only be counted by parsing them, which is only worth it when they are limited
+            if (limits.maxAttributes() != Integer.MAX_VALUE) limits.attributes(tokenizer.lineNumber(), MediaSegment.parse(tokenizer, null).attributes().size());
+            lazySegments.tag(tokenizer.start(), tokenizer.end(), duration);
+            pendingLazySegment = true;
+        } else if (pendingLazySegment && tokenizer.charAt(0) != '#') {
+            length++;
+            lazySegments.uri(tokenizer.start(), tokenizer.end());
+            pendingLazySegment = false;
+            limits.segments(tokenizer.lineNumber(), ++count);
+        } else {
+            accept(tokenizer.lineNumber(), tokenizer, tokenizer.uri());
+        }
+    }
+
+    //  The lines of a segment reused from the previous playlist skip the Validator, its tag is only checked if its URI changed
+    void acceptReusing(long lineNumber, String content) {
+        if (startsWith(content, "#EXTINF:") ? known(mediaSequence + segments.size()) != null : pendingTag != null && reused(content)) {
+            accept(lineNumber, content, null);
+        } else {
+            Line line = Validator.check(lineNumber, content, diagnostics);
+            if (line != null) accept(line);
+        }
+    }
+
+    //  The pending segment or variant only gets its URI once the next URI line shows up
+    void accept(long lineNumber, CharSequence content, URI link) {
+        length++;
+        if (content.charAt(0) != '#') {
+            uri(lineNumber, content.toString(), link);
+        } else if (startsWith(content, "#EXTINF:")) {
+            pending(lineNumber);
+            pendingSegment = known(mediaSequence + segments.size());
+            if (pendingSegment != null) {
+                pendingTag = content.toString();
+            } else {
+                try {
+                    pendingSegment = MediaSegment.parse(content, null);
+                } catch (RuntimeException e) {
+                    malformed(lineNumber, e);
+                }
+                if (pendingSegment != null) limits.attributes(lineNumber, pendingSegment.attributes().size());
+            }
+        } else if (startsWith(content, "#EXT-X-STREAM-INF:")) {
+            pending(lineNumber);
+            try {
+                pendingVariant = VariantStream.parse(lineNumber, content, attributes, null);
+            } catch (RuntimeException e) {
+                malformed(lineNumber, e);
+            }
+            limits.attributes(lineNumber, attributes.size());
+        } else if (startsWith(content, "#EXT-X-TARGETDURATION:")) {
+            targetDuration = decimalInteger(lineNumber, content, 22, targetDuration);
+            hasTargetDuration = true;
+        } else if (startsWith(content, "#EXT-X-MEDIA-SEQUENCE:")) {
+            mediaSequence = decimalInteger(lineNumber, content, 22, mediaSequence);
+            hasMediaSequence = true;
+        } else if (startsWith(content, "#EXT-X-MEDIA:")) {
+            try {
+                renditions.add(Rendition.parse(lineNumber, content, renditionAttributes));
+            } catch (RuntimeException e) {
+                malformed(lineNumber, e);
+            }
+            limits.attributes(lineNumber, renditionAttributes.size());
+        } else if (contentEquals(content, "#EXT-X-ENDLIST")) {
+            endList = true;
+        } else if (segmentStore != null) {
+            try {
+                segmentStore.tag(lineNumber, content);
+            } catch (RuntimeException e) {
+                malformed(lineNumber, e);
+            }
+        }
+    }
+
+    //  Starts over for the next playlist : the lists of the playlist built before are left to it, the new ones are sized after them
+    //  Lazy and columnar segments belong to a single playlist, so their builders are never reset
+    PlaylistBuilder reset() {
+        length = 0;
+        targetDuration = 0;
+        hasTargetDuration = false;
+        mediaSequence = 0;
+        hasMediaSequence = false;
+        endList = false;
+        pendingLineNumber = 0;
+        count = 0;
+        dropPendingTag();
+        segments = new ArrayList<>(segments.size());
+        variants = new ArrayList<>(variants.size());
+        renditions = new ArrayList<>(renditions.size());
+        return this;
+    }
+
+    private void pending(long lineNumber) {
+        if (hasPendingTag()) {
+            diagnostics.report(lineNumber, Rule.MISSING_URI, "Line " + lineNumber + " : the tag on line " + pendingLineNumber + " must be followed by a URI");
+            dropPendingTag();
+        }
+        pendingLineNumber = lineNumber;
+    }
+
+    private void dropPendingTag() {
+        pendingTag = null;
+        pendingSegment = null;
+        pendingVariant = null;
+        pendingLazySegment = false;
+    }
+
+    //  The tags are parsed by the records, which throw : their errors are only caught when they are collected
+    private void malformed(long lineNumber, RuntimeException e) {
+        if (diagnostics.strict()) {
+            Instrumentation.rejected(Rule.MALFORMED_TAG);
+            throw e;
+        }
+        diagnostics.report(lineNumber, Rule.MALFORMED_TAG, "Line " + lineNumber + " : " + e.getMessage());
+    }
+
+    private MediaSegment known(long sequenceNumber) {
+        if (previous == null || sequenceNumber < previous.mediaSequence() || sequenceNumber - previous.mediaSequence() >= previous.segments().size()) return null;
+        return previous.segments().get((int) (sequenceNumber - previous.mediaSequence()));
+    }
+
+    private boolean reused(String uri) {
+        return pendingSegment.uri().toString().equals(uri);
+    }
+
+    //  The URI is only built when it isn't the one of a reused segment
+    private void uri(long lineNumber, String uri, URI link) {
+        if (pendingTag != null || pendingSegment != null || pendingVariant != null) limits.segments(lineNumber, ++count);
+        if (pendingTag != null && reused(uri)) {
+            segments.add(pendingSegment);
+            pendingSegment = null;
+            pendingTag = null;
+            return;
+        }
+        if (link == null) link = URI.create(uri);
+        if (pendingTag != null) {
+            //  A media sequence number that now points to a different URI means the origin started over
+            if (Validator.check(pendingLineNumber, pendingTag, diagnostics) != null) segments.add(MediaSegment.parse(pendingTag, link));
+            pendingSegment = null;
+            pendingTag = null;
+        } else if (pendingSegment != null) {
+            if (segmentStore != null) {
+                segmentStore.add(mediaSequence + segmentStore.size(), pendingSegment.duration(), pendingSegment.attributes(), pendingSegment.title(), link);
+            } else {
+                var segment = new MediaSegment(pendingSegment.duration(), pendingSegment.attributes(), pendingSegment.title(), link);
+                segments.add(deduplicator != null ? deduplicator.segment(segment) : segment);
+            }
+            pendingSegment = null;
+        } else if (pendingVariant != null) {
+            variants.add(pendingVariant.withURI(link));
+            pendingVariant = null;
+        } else {
+            diagnostics.report(lineNumber, Rule.URI_WITHOUT_TAG, "Line " + lineNumber + " : a URI must follow either an EXTINF or an EXT-X-STREAM-INF tag");
+        }
+    }
+
+    //  The same check in both modes : an invalid value throws, or leaves the current one unchanged when it is collected
+    private long decimalInteger(long lineNumber, CharSequence content, int valueStart, long current) {
+        if (digits(content, valueStart)) {
+            try {
+                return CharSequences.decimalInteger(content, valueStart, content.length());
+            } catch (NumberFormatException e) {
+                //  Too large for a long
+            }
+        }
+        diagnostics.report(lineNumber, Rule.INVALID_DECIMAL_INTEGER, "Line " + lineNumber + " : the tag value must be a decimal-integer");
+        return current;
+    }
+
+    //  What was built so far, for the listeners of a playlist that is still being read
+    List<MediaSegment> segments() {
+        return segments;
+    }
+
+    List<VariantStream> variants() {
+        return variants;
+    }
+
+    long mediaSequence() {
+        return mediaSequence;
+    }
+
+    MediaSegment pendingSegment() {
+        return pendingSegment;
+    }
+
+    //  The attributes of the last EXT-X-STREAM-INF tag
+    AttributeList attributes() {
+        return attributes;
+    }
+
+    //  Digits only, as RFC 8216 writes a decimal-integer : no sign, no space
+    private static boolean digits(CharSequence content, int from) {
+        if (from == content.length()) return false;
+        for (int i = from; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    //  A tag still waiting for its URI at the end of a chunk
+    boolean hasPendingTag() {
+        return pendingSegment != null || pendingVariant != null || pendingLazySegment;
+    }
+
+    //  Segments and variant streams counted against the limits
+    long count() {
+        return count;
+    }
+
+    //  Adds what was built from the next chunk of the playlist, as if its lines had been accepted by this builder
+    void append(PlaylistBuilder chunk) {
+        length += chunk.length;
+        count += chunk.count;
+        if (chunk.hasTargetDuration) {
+            targetDuration = chunk.targetDuration;
+            hasTargetDuration = true;
+        }
+        if (chunk.hasMediaSequence) {
+            mediaSequence = chunk.mediaSequence;
+            hasMediaSequence = true;
+        }
+        endList |= chunk.endList;
+        segments.addAll(chunk.segments);
+        variants.addAll(chunk.variants);
+        renditions.addAll(chunk.renditions);
+        pendingLineNumber = chunk.pendingLineNumber;
+        pendingSegment = chunk.pendingSegment;
+        pendingVariant = chunk.pendingVariant;
+    }
+
+    Playlist build() {
+        if (hasPendingTag()) {
+            diagnostics.report(pendingLineNumber, Rule.MISSING_URI, "Line " + pendingLineNumber + " : the tag must be followed by a URI");
+            dropPendingTag();
+        }
+        //  When collected, the variant streams of a mixed playlist are dropped
+        boolean mediaSegments = lazySegments != null ? !lazySegments.isEmpty() : segmentStore != null ? !segmentStore.isEmpty() : !segments.isEmpty();
+        if (!variants.isEmpty() && mediaSegments) {
+            diagnostics.report(0, Rule.MIXED_PLAYLIST, "A playlist cannot contain both media segments and variant streams");
+            variants.clear();
+        }
+        if (lazySegments != null && !lazySegments.isEmpty()) return new MediaPlaylist(length, targetDuration, mediaSequence, endList, lazySegments);
+        if (segmentStore != null && !segmentStore.isEmpty()) return new MediaPlaylist(length, targetDuration, mediaSequence, endList, segmentStore);
+        if (!variants.isEmpty()) return new MasterPlaylist(length, Collections.unmodifiableList(variants), Collections.unmodifiableList(renditions));
+        return new MediaPlaylist(length, targetDuration, mediaSequence, endList, Collections.unmodifiableList(segments));
+    }
+}
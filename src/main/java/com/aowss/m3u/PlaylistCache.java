@@ -0,0 +1,162 @@
+package com.aowss.m3u;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import static com.aowss.m3u.PlaylistParser.parse;
+import static com.aowss.m3u.PlaylistReader.playlistBody;
+import static com.aowss.m3u.PlaylistReader.send;
+
+//  Least recently used playlists are evicted first
+//  Entries expire after half the target duration for live playlists ( https://tools.ietf.org/html/rfc8216#section-6.3.4 ) and never once the playlist has ended
+//  Expired entries are revalidated with a conditional GET so that an unchanged playlist isn't downloaded nor parsed again
+//  Concurrent misses of the same URI share a single request : only the first caller downloads, the others wait for its playlist
+public class PlaylistCache {
+
+    public record Statistics(long hits, long misses, long revalidations, long evictions, int size) {}
+
+    private record Entry(Playlist playlist, String etag, String lastModified, long expiresAt) {}
+
+    private final Map<URI, Entry> entries;
+    private final Map<URI, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+    private final long defaultTimeToLive;
+    private final LongSupplier clock;
+    private final Function<Stream<String>, Playlist> parser;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public PlaylistCache(int maximumSize, Duration defaultTimeToLive) {
+        this(maximumSize, defaultTimeToLive, System::nanoTime);
+    }
+
+    //  The cached playlists share the values they have in common, for as long as the cache is used
+    //  Playlists are loaded concurrently, so each load has its own loader
+    public PlaylistCache(int maximumSize, Duration defaultTimeToLive, Deduplicator deduplicator) {
+        this(maximumSize, defaultTimeToLive, System::nanoTime, lines -> PlaylistLoader.builder().deduplicate(deduplicator).build().parse(lines));
+    }
+
+    PlaylistCache(int maximumSize, Duration defaultTimeToLive, LongSupplier clock) {
+        this(maximumSize, defaultTimeToLive, clock, parse);
+    }
+
+    private PlaylistCache(int maximumSize, Duration defaultTimeToLive, LongSupplier clock, Function<Stream<String>, Playlist> parser) {
+        if (maximumSize < 1) throw new RuntimeException("The cache must be able to hold at least one playlist");
+        this.defaultTimeToLive = defaultTimeToLive.toNanos();
+        this.clock = clock;
+        this.parser = parser;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<URI, Entry> eldest) {
+                if (size() <= maximumSize) return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    public Playlist get(URI uri) {
+        Entry entry = fresh(uri);
+        if (entry != null) return entry.playlist();
+        var load = new CompletableFuture<Entry>();
+        CompletableFuture<Entry> pending = loading.putIfAbsent(uri, load);
+        if (pending != null) return join(pending).playlist();
+        try {
+            //  Another caller may have stored the playlist between the lookup and the registration of this load
+            entry = fresh(uri);
+            if (entry == null) {
+                synchronized (entries) {
+                    entry = entries.get(uri);
+                }
+                entry = load(uri, entry, clock.getAsLong());
+                synchronized (entries) {
+                    entries.put(uri, entry);
+                }
+            }
+            load.complete(entry);
+            return entry.playlist();
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(uri, load);
+        }
+    }
+
+    //  The cached entry when it hasn't expired yet
+    private Entry fresh(URI uri) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(uri);
+        }
+        if (entry == null || clock.getAsLong() - entry.expiresAt() >= 0) return null;
+        hits.increment();
+        return entry;
+    }
+
+    //  The callers waiting for a load get the error it failed with
+    private static Entry join(CompletableFuture<Entry> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private Entry load(URI uri, Entry cached, long now) {
+        var request = HttpRequest.newBuilder().GET().uri(uri);
+        if (cached != null && cached.etag() != null) request.header("If-None-Match", cached.etag());
+        if (cached != null && cached.lastModified() != null) request.header("If-Modified-Since", cached.lastModified());
+        HttpResponse<Stream<String>> response = send.apply(request.build());
+        if (cached != null && response.statusCode() == 304) {
+            revalidations.increment();
+            response.body().close();
+            //  The validators may have changed even though the playlist hasn't
+            String etag = response.headers().firstValue("ETag").orElse(cached.etag());
+            String lastModified = response.headers().firstValue("Last-Modified").orElse(cached.lastModified());
+            return new Entry(cached.playlist(), etag, lastModified, now + timeToLive(cached.playlist()));
+        }
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new RuntimeException("The playlist located at " + uri + " couldn't be downloaded : the server answered with status " + response.statusCode());
+        }
+        misses.increment();
+        Playlist playlist = parser.apply(playlistBody.apply(response));
+        return new Entry(playlist, response.headers().firstValue("ETag").orElse(null), response.headers().firstValue("Last-Modified").orElse(null), now + timeToLive(playlist));
+    }
+
+    private long timeToLive(Playlist playlist) {
+        if (playlist instanceof MediaPlaylist media && media.endList()) return Long.MAX_VALUE / 2;
+        if (playlist instanceof MediaPlaylist media && media.targetDuration() > 0) return TimeUnit.SECONDS.toNanos(media.targetDuration()) / 2;
+        return defaultTimeToLive;
+    }
+
+    public void invalidate(URI uri) {
+        synchronized (entries) {
+            entries.remove(uri);
+        }
+    }
+
+    public Statistics statistics() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Statistics(hits.sum(), misses.sum(), revalidations.sum(), evictions.sum(), size);
+    }
+}
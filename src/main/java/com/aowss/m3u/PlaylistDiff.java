@@ -0,0 +1,148 @@
+package com.aowss.m3u;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static com.aowss.m3u.SegmentStore.UNKNOWN;
+
+//  Compares and merges two versions of the same live media playlist, e.g. pulled from two origins, in a single pass over both windows
+//  Segments are aligned by media sequence number, or by program date time when both playlists date every segment : two packagers needn't number them alike
+//  Discontinuities and dates are only known to, and so only compared for, segments stored in a SegmentStore, see PlaylistLoader.Builder.columnar
+public class PlaylistDiff {
+
+    public enum Kind { MISSING_IN_PRIMARY, MISSING_IN_SECONDARY, DIFFERENT_URI, DIFFERENT_DURATION, DISCONTINUITY_MISMATCH, DATE_TIME_MISMATCH }
+
+    //  The sequence number is the one of the segment in the merged window, the missing segment is null
+    public record Difference(long sequenceNumber, Kind kind, MediaSegment primary, MediaSegment secondary) {}
+
+    public record Merge(MediaPlaylist playlist, List<Difference> differences) {
+        public boolean diverged() {
+            return !differences.isEmpty();
+        }
+    }
+
+    //  The merged window is the primary one, extended with the segments only the secondary one has as long as the window stays contiguous
+    //  When both have a segment, the one of the primary playlist is kept
+    public static Function<MediaPlaylist, Function<MediaPlaylist, Merge>> merge = primary -> secondary -> new Alignment(primary, secondary).merge();
+
+    public static Function<MediaPlaylist, Function<MediaPlaylist, List<Difference>>> diff = primary -> secondary -> merge.apply(primary).apply(secondary).differences();
+
+    //  Either both segments are there, or only one of them, the other index being -1
+    private record Step(int primary, int secondary) {}
+
+    private static class Alignment {
+
+        private final MediaPlaylist primary;
+        private final MediaPlaylist secondary;
+        private final List<MediaSegment> a;
+        private final List<MediaSegment> b;
+        private final SegmentStore storeA;
+        private final SegmentStore storeB;
+        private final boolean byDateTime;
+
+        Alignment(MediaPlaylist primary, MediaPlaylist secondary) {
+            this.primary = primary;
+            this.secondary = secondary;
+            this.a = primary.segments();
+            this.b = secondary.segments();
+            this.storeA = a instanceof SegmentStore store ? store : null;
+            this.storeB = b instanceof SegmentStore store ? store : null;
+            this.byDateTime = dated(storeA) && dated(storeB);
+        }
+
+        private static boolean dated(SegmentStore store) {
+            if (store == null || store.isEmpty()) return false;
+            for (int i = 0; i < store.size(); i++) {
+                if (store.programDateTime(i) == UNKNOWN) return false;
+            }
+            return true;
+        }
+
+        //  Two segments whose dates are less than half the shortest of them apart are the same segment, only used when both are stores
+        private long tolerance(int i, int j) {
+            return Math.round(Math.min(storeA.duration(i), storeB.duration(j)) * 500.0);
+        }
+
+        //  Negative when the segment of the primary playlist comes first, 0 when both are the same one
+        private long compare(int i, int j) {
+            if (!byDateTime) return (primary.mediaSequence() + i) - (secondary.mediaSequence() + j);
+            long difference = storeA.programDateTime(i) - storeB.programDateTime(j);
+            return Math.abs(difference) <= tolerance(i, j) ? 0 : difference;
+        }
+
+        private List<Step> steps() {
+            List<Step> steps = new ArrayList<>(Math.max(a.size(), b.size()));
+            int i = 0, j = 0;
+            while (i < a.size() || j < b.size()) {
+                long order = i == a.size() ? 1 : j == b.size() ? -1 : compare(i, j);
+                if (order == 0) steps.add(new Step(i++, j++));
+                else if (order < 0) steps.add(new Step(i++, -1));
+                else steps.add(new Step(-1, j++));
+            }
+            return steps;
+        }
+
+        //  Windows that neither overlap nor follow each other can't be merged without a hole
+        private boolean contiguous() {
+            if (a.isEmpty() || b.isEmpty()) return true;
+            if (!byDateTime) return secondary.mediaSequence() <= primary.mediaSequence() + a.size() && primary.mediaSequence() <= secondary.mediaSequence() + b.size();
+            long endA = storeA.programDateTime(a.size() - 1) + Math.round(storeA.duration(a.size() - 1) * 1000.0);
+            long endB = storeB.programDateTime(b.size() - 1) + Math.round(storeB.duration(b.size() - 1) * 1000.0);
+            return storeB.programDateTime(0) <= endA + tolerance(a.size() - 1, 0) && storeA.programDateTime(0) <= endB + tolerance(0, b.size() - 1);
+        }
+
+        Merge merge() {
+            List<Step> steps = steps();
+            boolean extended = contiguous();
+            //  Aligned by date, the segments are numbered from the first one of the primary playlist
+            int first = 0;
+            while (first < steps.size() && steps.get(first).primary() == -1) first++;
+            long start = a.isEmpty() ? secondary.mediaSequence() : primary.mediaSequence() - first;
+            List<Difference> differences = new ArrayList<>();
+            boolean columnar = storeA != null && (storeB != null || b.isEmpty());
+            SegmentStore mergedStore = columnar ? new SegmentStore() : null;
+            List<MediaSegment> merged = columnar ? mergedStore : new ArrayList<>(steps.size());
+            long mediaSequence = UNKNOWN;
+            for (int k = 0; k < steps.size(); k++) {
+                Step step = steps.get(k);
+                long sequenceNumber = byDateTime ? start + k : step.primary() != -1 ? primary.mediaSequence() + step.primary() : secondary.mediaSequence() + step.secondary();
+                if (step.primary() != -1 && step.secondary() != -1) {
+                    compare(sequenceNumber, step.primary(), step.secondary(), differences);
+                } else if (step.primary() == -1) {
+                    differences.add(new Difference(sequenceNumber, Kind.MISSING_IN_PRIMARY, null, b.get(step.secondary())));
+                    if (!extended) continue;
+                } else {
+                    differences.add(new Difference(sequenceNumber, Kind.MISSING_IN_SECONDARY, a.get(step.primary()), null));
+                }
+                if (mediaSequence == UNKNOWN) mediaSequence = sequenceNumber;
+                boolean fromPrimary = step.primary() != -1;
+                if (columnar) mergedStore.add(fromPrimary ? storeA : storeB, fromPrimary ? step.primary() : step.secondary(), sequenceNumber);
+                else merged.add(fromPrimary ? a.get(step.primary()) : b.get(step.secondary()));
+            }
+            if (mediaSequence == UNKNOWN) mediaSequence = primary.mediaSequence();
+            int added = merged.size() - a.size();
+            var playlist = new MediaPlaylist(
+                    primary.length() + 2L * added,
+                    Math.max(primary.targetDuration(), secondary.targetDuration()),
+                    mediaSequence,
+                    primary.endList() || secondary.endList(),
+                    columnar ? mergedStore : Collections.unmodifiableList(merged)
+            );
+            return new Merge(playlist, Collections.unmodifiableList(differences));
+        }
+
+        private void compare(long sequenceNumber, int i, int j, List<Difference> differences) {
+            MediaSegment first = a.get(i), second = b.get(j);
+            if (!first.uri().equals(second.uri())) differences.add(new Difference(sequenceNumber, Kind.DIFFERENT_URI, first, second));
+            if (Math.abs(first.duration() - second.duration()) > 0.001) differences.add(new Difference(sequenceNumber, Kind.DIFFERENT_DURATION, first, second));
+            if (storeA == null || storeB == null) return;
+            if (storeA.discontinuity(i) != storeB.discontinuity(j)) differences.add(new Difference(sequenceNumber, Kind.DISCONTINUITY_MISMATCH, first, second));
+            if (!byDateTime && storeA.programDateTime(i) != UNKNOWN && storeB.programDateTime(j) != UNKNOWN && Math.abs(storeA.programDateTime(i) - storeB.programDateTime(j)) > tolerance(i, j)) {
+                differences.add(new Difference(sequenceNumber, Kind.DATE_TIME_MISMATCH, first, second));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.aowss.m3u;
+
+import com.aowss.m3u.Diagnostics.Rule;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.*;
+
+//  Works out the encoding of a playlist file : RFC 8216 requires UTF-8, legacy M3U files predate it and are often Windows-1252
+//  A .m3u8 file is always UTF-8, a .m3u file is UTF-8 or UTF-16 when it starts with a BOM, UTF-16 when its first character has a 0 byte next to it,
+//  UTF-8 when its bytes are valid UTF-8 and Windows-1252 otherwise
+//  Pure ASCII content, by far the most common, is checked 8 bytes at a time and never decoded
+//  Content that can't be transcoded faithfully, UTF-16 without a BOM or bytes Windows-1252 doesn't define, is reported to the diagnostics
+public class PlaylistEncoding {
+
+    public static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+
+    //  US-ASCII when the content has no byte above 0x7F, whatever the extension
+    //  A playlist starts with '#', so UTF-16 without a BOM shows as a first character with a 0 byte on either side
+    public static Charset detect(Path path, ByteBuffer content) {
+        if (utf16(content, 1)) return UTF_16LE;
+        if (utf16(content, 0)) return UTF_16BE;
+        int ascii = asciiPrefix(content);
+        if (ascii == content.limit()) return US_ASCII;
+        if (path.toString().endsWith(".m3u8")) return UTF_8;
+        if (startsWith(content, 0xEF, 0xBB, 0xBF)) return UTF_8;
+        if (startsWith(content, 0xFE, 0xFF)) return UTF_16BE;
+        if (startsWith(content, 0xFF, 0xFE)) return UTF_16LE;
+        return validUTF8(content, ascii) ? UTF_8 : WINDOWS_1252;
+    }
+
+    //  The content as the tokenizer expects it : the same buffer when it is already UTF-8, a transcoded copy otherwise
+    //  The BOM of a .m3u file is dropped, the one of a .m3u8 file is left for the tokenizer to report
+    public static ByteBuffer toUTF8(Path path, ByteBuffer content) {
+        return toUTF8(path, content, Diagnostics.STRICT);
+    }
+
+    //  When the diagnostics don't throw, BOM-less UTF-16 is transcoded all the same and undefined bytes become U+FFFD
+    public static ByteBuffer toUTF8(Path path, ByteBuffer content, Diagnostics diagnostics) {
+        Charset charset = detect(path, content);
+        if (charset.equals(US_ASCII) || path.toString().endsWith(".m3u8")) return content;
+        int bom = charset.equals(UTF_8) ? startsWith(content, 0xEF, 0xBB, 0xBF) ? 3 : 0 : charset.equals(WINDOWS_1252) ? 0 : startsWith(content, 0xFE, 0xFF) || startsWith(content, 0xFF, 0xFE) ? 2 : 0;
+        if (charset.equals(UTF_8)) return bom == 0 ? content : content.slice(content.position() + bom, content.remaining() - bom);
+        if (charset.equals(WINDOWS_1252)) undefined(content, diagnostics);
+        else if (bom == 0) diagnostics.report(1, Rule.NOT_UTF8, "The playlist is " + charset + " encoded without a BOM");
+        ByteBuffer body = content.slice(content.position() + bom, content.remaining() - bom);
+        byte[] bytes = new byte[body.remaining()];
+        body.get(bytes);
+        return ByteBuffer.wrap(new String(bytes, charset).getBytes(UTF_8));
+    }
+
+    //  0x81, 0x8D, 0x8F, 0x90 and 0x9D have no character in Windows-1252
+    private static void undefined(ByteBuffer content, Diagnostics diagnostics) {
+        long lineNumber = 1;
+        for (int i = content.position(); i < content.limit() && !diagnostics.limitReached(); i++) {
+            int b = content.get(i) & 0xFF;
+            if (b == '\n') lineNumber++;
+            else if (b == 0x81 || b == 0x8D || b == 0x8F || b == 0x90 || b == 0x9D) diagnostics.report(lineNumber, Rule.NOT_UTF8, "Line " + lineNumber + " : byte 0x" + Integer.toHexString(b).toUpperCase() + " isn't a windows-1252 character");
+        }
+    }
+
+    private static boolean utf16(ByteBuffer content, int zero) {
+        return content.remaining() >= 2 && content.get(content.position() + zero) == 0 && content.get(content.position() + 1 - zero) == '#';
+    }
+
+    //  Position of the first byte above 0x7F, the limit when there is none
+    static int asciiPrefix(ByteBuffer content) {
+        int i = content.position(), limit = content.limit();
+        for (; i + 8 <= limit; i += 8) {
+            if ((content.getLong(i) & 0x8080808080808080L) != 0) break;
+        }
+        for (; i < limit; i++) {
+            if (content.get(i) < 0) return i;
+        }
+        return limit;
+    }
+
+    //  Overlong forms, surrogates and code points above U+10FFFF are rejected, as they are by the UTF-8 decoder
+    static boolean validUTF8(ByteBuffer content, int from) {
+        int limit = content.limit();
+        for (int i = from; i < limit; ) {
+            int b = content.get(i) & 0xFF;
+            if (b < 0x80) {
+                i++;
+                continue;
+            }
+            int length = b >= 0xC2 && b <= 0xDF ? 2 : b >= 0xE0 && b <= 0xEF ? 3 : b >= 0xF0 && b <= 0xF4 ? 4 : 0;
+            if (length == 0 || i + length > limit) return false;
+            int second = content.get(i + 1) & 0xFF;
+            if (second < (b == 0xE0 ? 0xA0 : b == 0xF0 ? 0x90 : 0x80) || second > (b == 0xED ? 0x9F : b == 0xF4 ? 0x8F : 0xBF)) return false;
+            for (int k = 2; k < length; k++) {
+                if ((content.get(i + k) & 0xC0) != 0x80) return false;
+            }
+            i += length;
+        }
+        return true;
+    }
+
+    private static boolean startsWith(ByteBuffer content, int... bytes) {
+        if (content.remaining() < bytes.length) return false;
+        for (int i = 0; i < bytes.length; i++) {
+            if ((content.get(content.position() + i) & 0xFF) != bytes[i]) return false;
+        }
+        return true;
+    }
+
+}
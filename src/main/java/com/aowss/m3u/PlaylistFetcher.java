@@ -0,0 +1,89 @@
+package com.aowss.m3u;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+//  Each download blocks its own virtual thread while the shared HTTP/2 client multiplexes the requests to the same host
+//  A host is only tracked while it has downloads running or waiting, so that fetching from many hosts doesn't grow the fetcher
+public class PlaylistFetcher implements AutoCloseable {
+
+    //  The number of downloads is only changed within the atomic updates of the map
+    private static final class Host {
+        private final Semaphore permits;
+        private int downloads;
+
+        Host(int maxRequests) {
+            this.permits = new Semaphore(maxRequests);
+        }
+    }
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final int maxRequestsPerHost;
+
+    public PlaylistFetcher(int maxRequestsPerHost) {
+        if (maxRequestsPerHost < 1) throw new RuntimeException("At least one request per host must be allowed");
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    public CompletableFuture<Playlist> fetch(URI uri) {
+        return CompletableFuture.supplyAsync(() -> download(uri), executor);
+    }
+
+    public List<CompletableFuture<Playlist>> fetchAll(Collection<URI> uris) {
+        return uris.stream().map(this::fetch).toList();
+    }
+
+    //  The playlists of the variant streams, followed by those of the renditions that have a URI, in the order of the master playlist
+    //  Their URIs are resolved against the master playlist URI
+    public CompletableFuture<List<Playlist>> fetchVariants(URI master) {
+        return fetch(master).thenCompose(playlist -> {
+            if (!(playlist instanceof MasterPlaylist masterPlaylist)) throw new RuntimeException("The playlist located at " + master + " isn't a master playlist");
+            List<URI> uris = new ArrayList<>();
+            for (VariantStream variant : masterPlaylist.variants()) uris.add(master.resolve(variant.uri()));
+            for (Rendition rendition : masterPlaylist.renditions()) {
+                if (rendition.uri() != null) uris.add(master.resolve(rendition.uri()));
+            }
+            var variants = fetchAll(uris);
+            return CompletableFuture.allOf(variants.toArray(CompletableFuture[]::new))
+                    .thenApply(done -> variants.stream().map(CompletableFuture::join).toList());
+        });
+    }
+
+    private Playlist download(URI uri) {
+        String authority = uri.getAuthority();
+        Host host = hosts.compute(authority, (key, current) -> {
+            Host used = current != null ? current : new Host(maxRequestsPerHost);
+            used.downloads++;
+            return used;
+        });
+        try {
+            try {
+                host.permits.acquire();
+            } catch (InterruptedException e) {
+                throw new RuntimeException("Interrupted while waiting to download the file from " + uri, e);
+            }
+            try {
+                return PlaylistReader.fromURI.apply(uri);
+            } finally {
+                host.permits.release();
+            }
+        } finally {
+            hosts.computeIfPresent(authority, (key, current) -> --current.downloads == 0 ? null : current);
+        }
+    }
+
+    //  Number of hosts with downloads running or waiting
+    int hosts() {
+        return hosts.size();
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
@@ -0,0 +1,265 @@
+package com.aowss.m3u;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+//  Parses the playlists of a directory tree with a fixed number of workers, each with its own loader and buffer
+//  The tree is walked as the workers go : the walk blocks once the queue is full, so a large catalogue is never listed in memory
+//  A file whose size and modification time, or failing that whose content, are those recorded in the manifest by the previous run isn't parsed again
+public class PlaylistIngester {
+
+    public enum Status { PARSED, UNCHANGED, FAILED }
+
+    //  The error is null unless the file failed, the bytes and segments are 0 unless it was parsed
+    public record FileResult(Path path, Status status, long bytes, long segments, long nanos, String error) {}
+
+    public record Report(List<FileResult> files, Duration elapsed) {
+
+        public long count(Status status) {
+            return files.stream().filter(file -> file.status() == status).count();
+        }
+
+        public long bytes() {
+            return files.stream().mapToLong(FileResult::bytes).sum();
+        }
+
+        public double filesPerSecond() {
+            return files.size() / seconds();
+        }
+
+        public double bytesPerSecond() {
+            return bytes() / seconds();
+        }
+
+        private double seconds() {
+            return Math.max(elapsed.toNanos(), 1) / 1e9;
+        }
+    }
+
+    private record Entry(long size, long modified, String hash) {}
+
+    private static final Path END = Path.of("");
+
+    private final int workers;
+    private final int queueCapacity;
+    private final Supplier<PlaylistLoader> loaders;
+
+    public PlaylistIngester(int workers, int queueCapacity) {
+        this(workers, queueCapacity, () -> PlaylistLoader.builder().build());
+    }
+
+    //  Each worker gets its own loader, e.g. to parse leniently or within limits
+    public PlaylistIngester(int workers, int queueCapacity, Supplier<PlaylistLoader> loaders) {
+        if (workers < 1) throw new RuntimeException("At least one worker is needed");
+        if (queueCapacity < 1) throw new RuntimeException("The queue must be able to hold at least one file");
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+        this.loaders = loaders;
+    }
+
+    public Report ingest(Path directory, BiConsumer<Path, Playlist> sink) {
+        return ingest(directory, null, sink);
+    }
+
+    //  The sink is called by the workers, concurrently, for each playlist that is parsed
+    //  The manifest is rewritten once the whole tree has been ingested, without the files that failed so that they are parsed again by the next run
+    //  A worker that dies, e.g. of an Error thrown by the sink, stops the walk and the other workers instead of leaving its files in the queue forever
+    public Report ingest(Path directory, Path manifest, BiConsumer<Path, Playlist> sink) {
+        long start = System.nanoTime();
+        Map<String, Entry> previous = manifest != null && Files.exists(manifest) ? read(manifest) : Map.of();
+        Map<String, Entry> next = manifest != null ? new ConcurrentHashMap<>() : null;
+        Queue<FileResult> results = new ConcurrentLinkedQueue<>();
+        BlockingQueue<Path> queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        boolean walked = false;
+        try {
+            for (int i = 0; i < workers; i++) {
+                executor.execute(new Worker(directory, queue, previous, next, results, sink, failure));
+            }
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.filter(PlaylistIngester::playlist).forEach(path -> put(queue, path, failure));
+            } catch (IOException | UncheckedIOException e) {
+                throw new RuntimeException("Error while walking the directory located at " + directory, e);
+            }
+            for (int i = 0; i < workers; i++) put(queue, END, failure);
+            walked = true;
+        } finally {
+            if (!walked) {
+                executor.shutdownNow();
+            } else {
+                executor.shutdown();
+                try {
+                    while (!executor.awaitTermination(1, TimeUnit.MINUTES));
+                } catch (InterruptedException e) {
+                    executor.shutdownNow();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        if (failure.get() != null) throw died(failure);
+        if (manifest != null) write(manifest, next);
+        List<FileResult> files = new ArrayList<>(results);
+        files.sort(Comparator.comparing(FileResult::path));
+        return new Report(Collections.unmodifiableList(files), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static boolean playlist(Path path) {
+        String name = path.getFileName().toString();
+        return (name.endsWith(".m3u8") || name.endsWith(".m3u")) && Files.isRegularFile(path);
+    }
+
+    //  Blocks while the workers are behind, as long as none of them died
+    private static void put(BlockingQueue<Path> queue, Path path, AtomicReference<Throwable> failure) {
+        try {
+            while (!queue.offer(path, 100, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) throw died(failure);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the workers", e);
+        }
+    }
+
+    private static RuntimeException died(AtomicReference<Throwable> failure) {
+        return new RuntimeException("A worker died : " + failure.get(), failure.get());
+    }
+
+    private class Worker implements Runnable {
+
+        private final Path directory;
+        private final BlockingQueue<Path> queue;
+        private final Map<String, Entry> previous;
+        private final Map<String, Entry> next;
+        private final Queue<FileResult> results;
+        private final BiConsumer<Path, Playlist> sink;
+        private final AtomicReference<Throwable> failure;
+        private final PlaylistLoader loader = loaders.get();
+        private final MessageDigest digest;
+        private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+        //  Without a manifest, next is null : nothing is recorded, so nothing is hashed
+        Worker(Path directory, BlockingQueue<Path> queue, Map<String, Entry> previous, Map<String, Entry> next, Queue<FileResult> results, BiConsumer<Path, Playlist> sink, AtomicReference<Throwable> failure) {
+            this.directory = directory;
+            this.queue = queue;
+            this.previous = previous;
+            this.next = next;
+            this.results = results;
+            this.sink = sink;
+            this.failure = failure;
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (Path path = queue.take(); path != END; path = queue.take()) {
+                    results.add(ingest(path));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+                throw t;
+            }
+        }
+
+        private FileResult ingest(Path path) {
+            long start = System.nanoTime();
+            String key = directory.relativize(path).toString();
+            try {
+                var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                long size = attributes.size();
+                long modified = attributes.lastModifiedTime().toMillis();
+                Entry known = previous.get(key);
+                if (known != null && known.size() == size && known.modified() == modified) {
+                    next.put(key, known);
+                    return new FileResult(path, Status.UNCHANGED, 0, 0, System.nanoTime() - start, null);
+                }
+                ByteBuffer content = read(path, size);
+                String hash = next != null ? hash(content) : null;
+                if (known != null && known.size() == size && known.hash().equals(hash)) {
+                    next.put(key, new Entry(size, modified, hash));
+                    return new FileResult(path, Status.UNCHANGED, 0, 0, System.nanoTime() - start, null);
+                }
+                Playlist playlist = loader.parse(path, content);
+                sink.accept(path, playlist);
+                if (next != null) next.put(key, new Entry(size, modified, hash));
+                long segments = playlist instanceof MediaPlaylist media ? media.segments().size() : ((MasterPlaylist) playlist).variants().size();
+                return new FileResult(path, Status.PARSED, size, segments, System.nanoTime() - start, null);
+            } catch (IOException | RuntimeException e) {
+                return new FileResult(path, Status.FAILED, 0, 0, System.nanoTime() - start, e.getMessage() != null ? e.getMessage() : e.toString());
+            }
+        }
+
+        //  The buffer is reused from one file to the next, unless the playlists keep referring to it
+        private ByteBuffer read(Path path, long size) throws IOException {
+            if (size > Integer.MAX_VALUE) throw new RuntimeException("The file located at " + path + " is too large");
+            ByteBuffer target = loader.lazy() ? ByteBuffer.allocate((int) size) : buffer.capacity() >= size ? buffer.clear() : (buffer = ByteBuffer.allocate((int) Math.max(size, buffer.capacity() * 2L)));
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                while (target.hasRemaining() && channel.read(target) >= 0);
+            }
+            return target.flip();
+        }
+
+        private String hash(ByteBuffer content) {
+            digest.reset();
+            digest.update(content.duplicate());
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+
+    //  One line per file : size, modification time in milliseconds, SHA-256 of the content and path relative to the directory, separated by tabs
+    private static Map<String, Entry> read(Path manifest) {
+        Map<String, Entry> entries = new HashMap<>();
+        try (Stream<String> lines = Files.lines(manifest, UTF_8)) {
+            lines.forEach(line -> {
+                String[] fields = line.split("\t", 4);
+                if (fields.length != 4) throw new RuntimeException("The manifest located at " + manifest + " is corrupted");
+                entries.put(fields[3], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2]));
+            });
+        } catch (IOException | UncheckedIOException | NumberFormatException e) {
+            throw new RuntimeException("Error while reading the manifest located at " + manifest, e);
+        }
+        return entries;
+    }
+
+    //  Written next to the manifest then moved over it, so that an interrupted run leaves the previous one intact
+    private static void write(Path manifest, Map<String, Entry> entries) {
+        Path temporary = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, UTF_8)) {
+            for (var entry : new TreeMap<>(entries).entrySet()) {
+                writer.write(entry.getValue().size() + "\t" + entry.getValue().modified() + "\t" + entry.getValue().hash() + "\t" + entry.getKey());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error while writing the manifest located at " + manifest, e);
+        }
+        try {
+            Files.move(temporary, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Error while writing the manifest located at " + manifest, e);
+        }
+    }
+
+}
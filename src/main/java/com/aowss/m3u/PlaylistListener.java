@@ -0,0 +1,15 @@
+package com.aowss.m3u;
+
+//  Events reported while a playlist is being read, in the order of its lines
+//  Attributes are reported right after their tag, segments and variants once their URI has been read
+public interface PlaylistListener {
+
+    //  The name of a tag is what follows the '#', its value what follows the ':', null if there is none
+    default void tag(long lineNumber, String name, String value) {}
+
+    default void attribute(long lineNumber, String name, String value) {}
+
+    default void segment(long sequenceNumber, MediaSegment segment) {}
+
+    default void variant(VariantStream variant) {}
+}
@@ -0,0 +1,26 @@
+package com.aowss.m3u;
+
+import jdk.jfr.*;
+
+//  Recorded by PlaylistReader and PlaylistLoader, only when a JFR recording enables it
+@Name("com.aowss.m3u.PlaylistLoad")
+@Label("Playlist Load")
+@Category("Playlist")
+@StackTrace(false)
+class PlaylistLoadEvent extends Event {
+
+    @Label("Source")
+    String source;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Lines")
+    long lines;
+
+    @Label("Segments")
+    @Description("Media segments or variant streams")
+    long segments;
+
+}
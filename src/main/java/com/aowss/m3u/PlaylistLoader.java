@@ -0,0 +1,327 @@
+package com.aowss.m3u;
+
+import com.aowss.m3u.Diagnostics.Diagnostic;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+//  A configured reader for the threads that load playlists in a loop : its bytes, tokenizer, builder and diagnostics are recycled from one playlist to the next
+//  A loader isn't thread-safe, each thread uses its own
+//  Lazily parsed playlists keep referring to their bytes, so these are never recycled
+public class PlaylistLoader {
+
+    public static class Builder {
+
+        private int diagnosticsLimit;
+        private Charset charset = UTF_8;
+        private boolean detectCharset;
+        private boolean lazy;
+        private boolean columnar;
+        private Deduplicator deduplicator;
+        private ForkJoinPool pool;
+        private int bufferSize = 64 * 1024;
+        private Limits limits = Limits.NONE;
+
+        private Builder() {}
+
+        //  The first broken rule throws, which is the default
+        public Builder strict() {
+            diagnosticsLimit = 0;
+            return this;
+        }
+
+        //  Broken rules are collected, see Diagnostics, and parsing stops once the limit is reached
+        public Builder lenient(int diagnosticsLimit) {
+            if (diagnosticsLimit <= 0) throw new RuntimeException("The limit must be positive");
+            this.diagnosticsLimit = diagnosticsLimit;
+            return this;
+        }
+
+        //  Playlists that aren't UTF-8 encoded are transcoded before they are parsed
+        public Builder charset(Charset charset) {
+            if (charset == null) throw new RuntimeException("The charset is mandatory");
+            this.charset = charset;
+            this.detectCharset = false;
+            return this;
+        }
+
+        //  The charset of each file is worked out from its extension and its bytes, see PlaylistEncoding
+        public Builder detectCharset() {
+            this.charset = UTF_8;
+            this.detectCharset = true;
+            return this;
+        }
+
+        //  Segments are only parsed when they are indexed, see LazySegmentList
+        public Builder lazy(boolean lazy) {
+            this.lazy = lazy;
+            return this;
+        }
+
+        //  Segments are stored in columns, along with what the other media segment tags say about them, see SegmentStore
+        public Builder columnar(boolean columnar) {
+            this.columnar = columnar;
+            return this;
+        }
+
+        //  Segments share the titles, attributes and URIs they have in common with the segments seen before them, in this playlist or the previous ones
+        public Builder deduplicate(Deduplicator deduplicator) {
+            this.deduplicator = deduplicator;
+            return this;
+        }
+
+        //  Large playlists are split in chunks parsed by the pool, see PlaylistParser.parseInParallel : only strict loaders can do so
+        public Builder parallel(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        //  Initial size of the recycled buffers, they grow to fit the largest playlist loaded
+        public Builder bufferSize(int bufferSize) {
+            if (bufferSize < 1) throw new RuntimeException("The buffer size must be positive");
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        //  Reading stops with an error as soon as a limit is exceeded, whatever the strictness
+        public Builder limits(Limits limits) {
+            if (limits == null) throw new RuntimeException("The limits are mandatory");
+            this.limits = limits;
+            return this;
+        }
+
+        public PlaylistLoader build() {
+            if ((lazy ? 1 : 0) + (columnar ? 1 : 0) + (deduplicator != null ? 1 : 0) > 1) throw new RuntimeException("The segments can only be parsed lazily, stored in columns or deduplicated, not a combination of them");
+            if (pool != null && (diagnosticsLimit != 0 || lazy || columnar || deduplicator != null)) throw new RuntimeException("Only strict loaders that build the segments themselves can parse in parallel");
+            return new PlaylistLoader(this);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final Diagnostics diagnostics;
+    private final boolean lazy;
+    private final boolean columnar;
+    private final ForkJoinPool pool;
+    private final int bufferSize;
+    private final Charset charset;
+    private final boolean detectCharset;
+    private final CharsetDecoder decoder;
+    private final CharsetEncoder encoder;
+    private final PlaylistTokenizer tokenizer;
+    private final PlaylistBuilder builder;
+    private final Limits limits;
+
+    private ByteBuffer bytes;
+    private CharBuffer chars;
+    private ByteBuffer transcoded;
+    //  The load in progress, timed from the call to read or parse as PlaylistReader times its loads
+    private long start;
+    private Path file;
+    private URI uri;
+    private PlaylistLoadEvent event;
+
+    private PlaylistLoader(Builder options) {
+        this.diagnostics = options.diagnosticsLimit == 0 ? Diagnostics.STRICT : new Diagnostics(options.diagnosticsLimit);
+        this.lazy = options.lazy;
+        this.columnar = options.columnar;
+        this.pool = options.pool;
+        this.bufferSize = options.bufferSize;
+        this.charset = options.charset;
+        this.detectCharset = options.detectCharset;
+        boolean utf8 = charset.equals(UTF_8) || charset.equals(US_ASCII);
+        this.decoder = utf8 ? null : charset.newDecoder();
+        this.encoder = utf8 ? null : UTF_8.newEncoder();
+        this.tokenizer = new PlaylistTokenizer(ByteBuffer.allocate(0), diagnostics);
+        this.limits = options.limits;
+        this.builder = new PlaylistBuilder(options.deduplicator, diagnostics).limit(limits);
+    }
+
+    public Playlist read(Path filePath) {
+        if (!filePath.toString().endsWith(".m3u8") && !filePath.toString().endsWith(".m3u")) throw new RuntimeException("The path must end with either .m3u8 or .m3u");
+        long deadline = limits.deadline(begin(filePath, null));
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            limits.bytes(channel.size());
+            if (channel.size() > Integer.MAX_VALUE) throw new RuntimeException("The file located at " + filePath + " is too large");
+            if (lazy && decoder == null) return parse(utf8(filePath, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())), deadline);
+            ByteBuffer buffer = lazy ? ByteBuffer.allocate((int) channel.size()) : recycled((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0);
+            return parse(utf8(filePath, buffer.flip()), deadline);
+        } catch (IOException e) {
+            throw new RuntimeException("Error while reading the file located at " + filePath, e);
+        }
+    }
+
+    //  Closing the body cancels the request once a limit is exceeded, the deadline is only checked between two reads : see PlaylistReader.fromURIWithLimits for a download that can't stall
+    public Playlist read(URI uri) {
+        long deadline = limits.deadline(begin(null, uri));
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .GET()
+                .uri(uri);
+        if (limits.deadline() != null) request.timeout(limits.deadline());
+
+        HttpResponse<InputStream> response;
+        try {
+            response = PlaylistReader.httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException | InterruptedException e) {
+            throw new RuntimeException("Error while downloading the file from " + uri, e);
+        }
+        try (InputStream body = response.body()) {
+            PlaylistReader.playlist(response.uri(), response.headers());
+            response.headers().firstValueAsLong("Content-Length").ifPresent(limits::bytes);
+            ByteBuffer buffer = lazy ? ByteBuffer.allocate(bufferSize) : recycled(bufferSize);
+            for (int read; (read = body.read(buffer.array(), buffer.position(), buffer.remaining())) >= 0; ) {
+                buffer.position(buffer.position() + read);
+                limits.bytes(buffer.position());
+                limits.expired(deadline);
+                if (!buffer.hasRemaining()) buffer = grow(buffer);
+            }
+            PlaylistMetrics metrics = Instrumentation.metrics();
+            if (metrics != null) metrics.time(PlaylistMetrics.Stage.DOWNLOAD, System.nanoTime() - start);
+            return parse(buffer.flip(), deadline);
+        } catch (IOException e) {
+            throw new RuntimeException("Error while downloading the file from " + uri, e);
+        }
+    }
+
+    //  The content is read from its position to its limit, it must not change while a lazily parsed playlist refers to it
+    public Playlist parse(ByteBuffer content) {
+        return parse(content, limits.deadline(begin(null, null)));
+    }
+
+    //  The content of the file located at the path, already read by the caller : its charset is detected from both when the loader does so
+    public Playlist parse(Path filePath, ByteBuffer content) {
+        long deadline = limits.deadline(begin(filePath, null));
+        return parse(utf8(filePath, content), deadline);
+    }
+
+    //  Lines already split and decoded by the caller, e.g. from an HTTP body : the charset options don't apply and their lengths are counted in chars
+    public Playlist parse(Stream<String> lines) {
+        if (lazy) throw new RuntimeException("Lazily parsed playlists must be read from their bytes");
+        long deadline = limits.deadline(begin(null, null));
+        PlaylistBuilder builder = builder(null);
+        Validator.validateWith.apply(diagnostics).apply(lines).forEachOrdered(line -> {
+            limits.lineLength(line.lineNumber(), line.content().length());
+            if ((line.lineNumber() & 0xFF) == 0) limits.expired(deadline);
+            builder.accept(line);
+        });
+        Playlist playlist = builder.build();
+        return loaded(playlist, -1, playlist.length());
+    }
+
+    //  Neither the file nor the URI is known when the content is handed over by the caller
+    private long begin(Path file, URI uri) {
+        diagnostics.clear();
+        this.file = file;
+        this.uri = uri;
+        event = new PlaylistLoadEvent();
+        event.begin();
+        return start = System.nanoTime();
+    }
+
+    //  The tokenizer validates the lines as it finds them : only the whole load is timed, as it is by PlaylistSubscriber
+    private Playlist parse(ByteBuffer content, long deadline) {
+        limits.bytes(content.remaining());
+        long size = content.remaining();
+        ByteBuffer utf8 = decoder == null ? content : transcode(content);
+        Playlist playlist = pool == null ? null : PlaylistParser.parseInParallel(pool, utf8, limits, deadline);
+        if (playlist != null) return loaded(playlist, size, playlist.length());
+        tokenizer.reset(utf8);
+        PlaylistBuilder builder = builder(utf8);
+        for (int lines = 1; tokenizer.next(); lines++) {
+            limits.lineLength(tokenizer.lineNumber(), tokenizer.end() - tokenizer.start());
+            //  The clock is only read every 256 lines
+            if ((lines & 0xFF) == 0) limits.expired(deadline);
+            builder.accept(tokenizer);
+        }
+        return loaded(builder.build(), size, tokenizer.lineNumber());
+    }
+
+    //  Lazy and columnar segments belong to a single playlist, so their builders are never recycled
+    private PlaylistBuilder builder(ByteBuffer content) {
+        if (lazy) return new PlaylistBuilder(new LazySegmentList(content), diagnostics).limit(limits);
+        if (columnar) return new PlaylistBuilder(new SegmentStore(), diagnostics).limit(limits);
+        return builder.reset();
+    }
+
+    //  The size of the lines handed over by the caller isn't known
+    private Playlist loaded(Playlist playlist, long size, long lines) {
+        PlaylistMetrics metrics = Instrumentation.metrics();
+        if (metrics != null) {
+            metrics.time(PlaylistMetrics.Stage.LOAD, System.nanoTime() - start);
+            if (size >= 0) metrics.bytes(size);
+            metrics.lines(lines);
+            metrics.segments(PlaylistReader.segments(playlist));
+        }
+        if (event.shouldCommit()) {
+            if (file != null || uri != null) event.source = (file != null ? file.toUri() : uri).toString();
+            if (size >= 0) event.bytes = size;
+            event.lines = playlist.length();
+            event.segments = PlaylistReader.segments(playlist);
+            event.commit();
+        }
+        return playlist;
+    }
+
+    private ByteBuffer utf8(Path filePath, ByteBuffer content) {
+        return detectCharset ? PlaylistEncoding.toUTF8(filePath, content, diagnostics) : content;
+    }
+
+    //  Whether the playlists keep referring to the buffers they are parsed from
+    boolean lazy() {
+        return lazy;
+    }
+
+    //  The rules broken by the last playlist, always empty when the loader is strict
+    public List<Diagnostic> diagnostics() {
+        return List.copyOf(diagnostics.list());
+    }
+
+    private ByteBuffer recycled(int size) {
+        //  Allocated by the first load, a loader that only parses lines or lazily never needs it
+        if (bytes == null || bytes.capacity() < size) bytes = ByteBuffer.allocate(Math.max(size, bytes == null ? bufferSize : bytes.capacity() * 2));
+        return bytes.clear();
+    }
+
+    private ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+        larger.put(buffer.flip());
+        if (!lazy) bytes = larger;
+        return larger;
+    }
+
+    private ByteBuffer transcode(ByteBuffer content) {
+        int size = (int) (content.remaining() * (double) decoder.maxCharsPerByte());
+        if (chars == null || chars.capacity() < size) chars = CharBuffer.allocate(size);
+        chars.clear();
+        decoder.reset();
+        CoderResult result = decoder.decode(content, chars, true);
+        if (!result.isUnderflow() || !decoder.flush(chars).isUnderflow()) throw new RuntimeException("The playlist isn't encoded in " + charset);
+        chars.flip();
+        size = (int) (chars.remaining() * (double) encoder.maxBytesPerChar());
+        ByteBuffer target = lazy ? ByteBuffer.allocate(size) : transcoded != null && transcoded.capacity() >= size ? transcoded.clear() : ByteBuffer.allocate(size);
+        if (!lazy) transcoded = target;
+        encoder.reset();
+        encoder.encode(chars, target, true);
+        encoder.flush(target);
+        return target.flip();
+    }
+
+}
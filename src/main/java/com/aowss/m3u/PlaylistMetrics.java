@@ -0,0 +1,31 @@
+package com.aowss.m3u;
+
+import com.aowss.m3u.Diagnostics.Rule;
+
+//  What is measured while playlists are loaded, validated and parsed
+//  Implementations are either found by the ServiceLoader or installed with Instrumentation.install : when there is none, nothing is measured
+//  They are called from the threads loading the playlists, so they must be thread-safe
+public interface PlaylistMetrics {
+
+    enum Stage {
+        //  The whole PlaylistReader or PlaylistLoader call, from the request or the opening of the file to the playlist
+        LOAD,
+        //  From the request to the last byte of the body : a body that is parsed as it arrives is downloaded along with its parsing
+        DOWNLOAD,
+        //  Only timed by PlaylistParser, the loaders and subscribers that tokenize the bytes validate and parse each line in one go
+        VALIDATE,
+        PARSE
+    }
+
+    default void time(Stage stage, long nanos) {}
+
+    default void bytes(long count) {}
+
+    default void lines(long count) {}
+
+    //  Media segments or variant streams
+    default void segments(long count) {}
+
+    default void rejected(Rule rule) {}
+
+}
@@ -1,39 +1,216 @@
 package com.aowss.m3u;
 
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
 import static com.aowss.m3u.Validator.validate;
-import static java.util.stream.Collectors.toMap;
-import static java.util.stream.Collectors.toUnmodifiableMap;
 
 public class PlaylistParser {
 
     public static Function<Stream<String>, Playlist> parse = content -> {
-        Stream<Line> lines = validate.apply(content);
-        return new MediaPlaylist(lines.count());
+        PlaylistMetrics metrics = Instrumentation.metrics();
+        if (metrics != null) return parse(content, metrics);
+        var builder = new PlaylistBuilder();
+        validate.apply(content).forEachOrdered(builder);
+        return builder.build();
     };
 
+    //  The same steps as Validator.validate followed by the builder, with each of them timed
+    private static Playlist parse(Stream<String> content, PlaylistMetrics metrics) {
+        var builder = new PlaylistBuilder();
+        var timings = new Timings();
+        content.forEachOrdered(raw -> {
+            long start = System.nanoTime();
+            Line line = Validator.check(++timings.lines, raw);
+            long validated = System.nanoTime();
+            timings.validation += validated - start;
+            if (line != null) {
+                builder.accept(line);
+                timings.parsing += System.nanoTime() - validated;
+            }
+        });
+        return timings.report(builder, metrics);
+    }
+
+    private static Playlist parseBuffer(ByteBuffer content, PlaylistMetrics metrics) {
+        var tokenizer = new PlaylistTokenizer(content);
+        var builder = new PlaylistBuilder();
+        var timings = new Timings();
+        for (long start = System.nanoTime(), validated; tokenizer.next(); start = System.nanoTime()) {
+            validated = System.nanoTime();
+            timings.validation += validated - start;
+            builder.accept(tokenizer);
+            timings.parsing += System.nanoTime() - validated;
+        }
+        timings.lines = tokenizer.lineNumber();
+        return timings.report(builder, metrics);
+    }
+
+    private static final class Timings {
+        long lines;
+        long validation;
+        long parsing;
+
+        Playlist report(PlaylistBuilder builder, PlaylistMetrics metrics) {
+            long start = System.nanoTime();
+            Playlist playlist = builder.build();
+            metrics.time(PlaylistMetrics.Stage.VALIDATE, validation);
+            metrics.time(PlaylistMetrics.Stage.PARSE, parsing + System.nanoTime() - start);
+            metrics.lines(lines);
+            metrics.segments(playlist instanceof MediaPlaylist media ? media.segments().size() : ((MasterPlaylist) playlist).variants().size());
+            return playlist;
+        }
+    }
+
+    public static Function<MediaPlaylist, Function<Stream<String>, Playlist>> refresh = previous -> content -> {
+        var builder = new PlaylistBuilder(previous);
+        var lineNumber = new AtomicLong(1);
+        content.forEachOrdered(line -> builder.acceptReusing(lineNumber.getAndIncrement(), line));
+        return builder.build();
+    };
+
+    public static Function<ByteBuffer, Playlist> parseBuffer = content -> {
+        PlaylistMetrics metrics = Instrumentation.metrics();
+        if (metrics != null) return parseBuffer(content, metrics);
+        var tokenizer = new PlaylistTokenizer(content);
+        var builder = new PlaylistBuilder();
+        while (tokenizer.next()) builder.accept(tokenizer);
+        return builder.build();
+    };
+
+    //  Lines, tags and URIs that break a rule are reported to the diagnostics and skipped, parsing stops once their limit is reached
+    public static Function<Diagnostics, Function<Stream<String>, Playlist>> parseLeniently = diagnostics -> content -> {
+        var builder = new PlaylistBuilder(diagnostics);
+        Validator.validateWith.apply(diagnostics).apply(content).forEachOrdered(builder);
+        return builder.build();
+    };
+
+    //  Chunks start on an EXTINF line so that each of them can be validated and parsed on its own, then appended to the previous one
+    //  Their lines are counted first so that every chunk knows the number of its first line
+    //  Chunks are appended in order, so the first failure is the one the sequential parsing would have reported
+    //  The exceptions are a tag without URI at the end of a chunk, whose error depends on the next chunk, and segments beyond their limit, which a chunk can't count on its own
+    //  The result is then null and the caller parses the playlist sequentially, as it does when the playlist is too small to be split
+    static Playlist parseInParallel(ForkJoinPool pool, ByteBuffer content, Limits limits, long deadline) {
+        int[] boundaries = chunks(content, pool.getParallelism() * 4);
+        int count = boundaries.length - 1;
+        if (count == 1) return null;
+        List<Callable<Long>> counting = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int from = boundaries[i], to = boundaries[i + 1];
+            counting.add(() -> PlaylistTokenizer.countLines(content, from, to));
+        }
+        List<Long> lines = results(pool.invokeAll(counting));
+        Limits chunkLimits = limits.withMaxSegments(Integer.MAX_VALUE);
+        List<Callable<Chunk>> parsing = new ArrayList<>(count);
+        long lineNumber = 0;
+        for (int i = 0; i < count; i++) {
+            var tokenizer = new PlaylistTokenizer(content.slice(boundaries[i], boundaries[i + 1] - boundaries[i]), lineNumber);
+            parsing.add(() -> {
+                var builder = new PlaylistBuilder().limit(chunkLimits);
+                try {
+                    for (int n = 1; tokenizer.next(); n++) {
+                        chunkLimits.lineLength(tokenizer.lineNumber(), tokenizer.end() - tokenizer.start());
+                        if ((n & 0xFF) == 0) chunkLimits.expired(deadline);
+                        builder.accept(tokenizer);
+                    }
+                    return new Chunk(builder, null);
+                } catch (RuntimeException e) {
+                    return new Chunk(builder, e);
+                }
+            });
+            lineNumber += lines.get(i);
+        }
+        PlaylistBuilder builder = null;
+        for (Chunk chunk : results(pool.invokeAll(parsing))) {
+            if (builder != null && builder.hasPendingTag()) return null;
+            if ((builder == null ? 0 : builder.count()) + chunk.builder().count() > limits.maxSegments()) return null;
+            if (chunk.error() != null) throw chunk.error();
+            if (builder == null) builder = chunk.builder();
+            else builder.append(chunk.builder());
+        }
+        return builder.build();
+    }
+
+    //  Positions of the EXTINF lines following evenly spaced offsets, with the start and the end of the buffer
+    private static int[] chunks(ByteBuffer content, int count) {
+        int from = content.position(), to = content.limit();
+        int size = Math.max((to - from) / count, 64 * 1024);
+        int[] boundaries = new int[count + 1];
+        int n = 0;
+        boundaries[n++] = from;
+        while (n < count) {
+            int boundary = nextTag(content, Math.max(from + n * size, boundaries[n - 1] + 1), to);
+            if (boundary == to) break;
+            boundaries[n++] = boundary;
+        }
+        boundaries[n++] = to;
+        return Arrays.copyOf(boundaries, n);
+    }
+
+    private static int nextTag(ByteBuffer content, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte previous = content.get(i - 1);
+            if ((previous == '\n' || previous == '\r') && startsWith(content, i, "#EXTINF:")) return i;
+        }
+        return to;
+    }
+
+    private static boolean startsWith(ByteBuffer content, int index, String prefix) {
+        if (content.limit() - index < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (content.get(index + i) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    //  Errors are kept as they are thrown, the pool would otherwise wrap them
+    private record Chunk(PlaylistBuilder builder, RuntimeException error) {}
+
+    private static <T> List<T> results(List<Future<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) results.add(future.get());
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        return results;
+    }
+
     public record Attribute(String name, String value) {
         public Attribute {
             if (name == null || name.isEmpty())
                 throw new RuntimeException("The attribute name is mandatory");
             if (value == null || value.isBlank())
                 throw new RuntimeException("The attribute value is mandatory");
-            Scanner nameScanner = new Scanner(name);
-            if (nameScanner.findInLine("[^A-Z0-9\\-]+]") != null)
-                throw new RuntimeException("An attribute name can only contain the following characters: [A..Z], [0..9] and '-'");
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (!(c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-'))
+                    throw new RuntimeException("An attribute name can only contain the following characters: [A..Z], [0..9] and '-'");
+            }
         }
     }
 
-    public static Function<String, Function<String, Map<String, String>>> attributesParser = separator -> content ->
-        Arrays.stream(content.split(separator))
-            .map(pair -> {
-                String[] parts = pair.split("=");
-                if (parts == null || parts.length != 2) throw new RuntimeException("An attribute should have a name and a value separated by '='");
-                return new Attribute(parts[0], parts[1]);
-            })
-            .collect(toUnmodifiableMap(Attribute::name, Attribute::value));
+    //  The separator is a regular expression, split by String.split which doesn't compile single characters, and each pair is split around its '=' by hand
+    //  As with String.split, trailing separators and trailing '=' are ignored
+    public static Function<String, Function<String, Map<String, String>>> attributesParser = separator -> content -> {
+        Map<String, String> attributes = new HashMap<>();
+        for (String pair : content.split(separator)) {
+            int end = pair.length();
+            while (end > 0 && pair.charAt(end - 1) == '=') end--;
+            int equals = pair.indexOf('=');
+            if (equals == -1 || equals >= end || pair.lastIndexOf('=', end - 1) != equals) throw new RuntimeException("An attribute should have a name and a value separated by '='");
+            var attribute = new Attribute(pair.substring(0, equals), pair.substring(equals + 1, end));
+            String previous = attributes.put(attribute.name(), attribute.value());
+            if (previous != null) throw new IllegalStateException("Duplicate key " + attribute.name() + " (attempted merging values " + previous + " and " + attribute.value() + ")");
+        }
+        return Collections.unmodifiableMap(attributes);
+    };
 
 }
@@ -3,44 +3,203 @@ package com.aowss.m3u;
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.*;
 import java.util.function.*;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.aowss.m3u.PlaylistParser.parse;
+import static com.aowss.m3u.PlaylistParser.parseBuffer;
 import static java.net.http.HttpClient.Version.HTTP_2;
 
 public class PlaylistReader {
 
-    private static final HttpClient httpClient = HttpClient.newBuilder()
+    static final HttpClient httpClient = HttpClient.newBuilder()
             .version(HTTP_2)
             .followRedirects(HttpClient.Redirect.NORMAL)
             .build();
 
     public static Function<Path, Playlist> fromFile = filePath -> {
         if (!filePath.toString().endsWith(".m3u8") && !filePath.toString().endsWith(".m3u")) throw new RuntimeException("The path must end with either .m3u8 or .m3u");
-        try {
-            return parse.apply(Files.lines(filePath, StandardCharsets.UTF_8));
+        PlaylistMetrics metrics = Instrumentation.metrics();
+        var event = new PlaylistLoadEvent();
+        event.begin();
+        long start = metrics != null ? System.nanoTime() : 0;
+        try (Stream<String> lines = Files.lines(filePath, StandardCharsets.UTF_8)) {
+            Playlist playlist = parse.apply(lines);
+            if (metrics != null || event.shouldCommit()) loaded(filePath.toUri(), Files.size(filePath), playlist, start, metrics, event);
+            return playlist;
         } catch (IOException e) {
             throw new RuntimeException("Error while reading the file located at " + filePath, e);
         }
     };
 
-    public static Function<URI, Playlist> fromURI = uri -> {
+    //  The mapping stays alive as long as the playlist refers to it, e.g. when its segments are parsed lazily
+    public static Function<Function<ByteBuffer, Playlist>, Function<Path, Playlist>> fromMappedFileWith = parser -> filePath -> {
+        if (!filePath.toString().endsWith(".m3u8") && !filePath.toString().endsWith(".m3u")) throw new RuntimeException("The path must end with either .m3u8 or .m3u");
+        PlaylistMetrics metrics = Instrumentation.metrics();
+        var event = new PlaylistLoadEvent();
+        event.begin();
+        long start = metrics != null ? System.nanoTime() : 0;
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            Playlist playlist = parser.apply(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            if (metrics != null || event.shouldCommit()) loaded(filePath.toUri(), channel.size(), playlist, start, metrics, event);
+            return playlist;
+        } catch (IOException e) {
+            throw new RuntimeException("Error while reading the file located at " + filePath, e);
+        }
+    };
+
+    public static Function<Path, Playlist> fromMappedFile = fromMappedFileWith.apply(parseBuffer);
+
+    //  For legacy M3U files that aren't UTF-8 encoded, see PlaylistEncoding : ASCII and UTF-8 files are parsed straight from their mapping
+    public static Function<Path, Playlist> fromFileDetectingCharset = filePath -> fromMappedFileWith.apply(content -> parseBuffer.apply(PlaylistEncoding.toUTF8(filePath, content))).apply(filePath);
+
+    static Function<HttpRequest, HttpResponse<Stream<String>>> send = request -> {
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+        } catch (IOException | InterruptedException e) {
+            throw new RuntimeException("Error while downloading the file from " + request.uri(), e);
+        }
+    };
+
+    private static final Predicate<String> isM3U = value -> value.equals("application/vnd.apple.mpegurl") || value.equals("audio/mpegurl");
+
+    static void playlist(URI uri, HttpHeaders headers) {
+        if ( !uri.getPath().endsWith(".m3u8") && !uri.getPath().endsWith(".m3u") && !headers.allValues("Content-Type").stream().anyMatch(isM3U) ) throw new RuntimeException("The URI must end with either .m3u8 or .m3u or the Content-Type must be either 'application/vnd.apple.mpegurl' or 'audio/mpegurl'");
+    }
+
+    static Function<HttpResponse<Stream<String>>, Stream<String>> playlistBody = response -> {
+        playlist(response.uri(), response.headers());
+        return response.body();
+    };
+
+    //  The whole body is read, for callers that parse it later, e.g. under a lock
+    static Function<URI, List<String>> download = uri -> {
+        HttpRequest request = HttpRequest.newBuilder()
+                .GET()
+                .uri(uri)
+                .build();
+        try (Stream<String> lines = playlistBody.apply(send.apply(request))) {
+            return lines.toList();
+        }
+    };
+
+    public static Function<Function<Stream<String>, Playlist>, Function<URI, Playlist>> fromURIWith = parser -> uri -> {
         HttpRequest request = HttpRequest.newBuilder()
                 .GET()
                 .uri(uri)
                 .build();
 
+        PlaylistMetrics metrics = Instrumentation.metrics();
+        var event = new PlaylistLoadEvent();
+        event.begin();
+        long start = metrics != null ? System.nanoTime() : 0;
+        HttpResponse<Stream<String>> response = send.apply(request);
+        Stream<String> body = playlistBody.apply(response);
+        Playlist playlist = parser.apply(metrics != null ? downloaded(body, start, metrics) : body);
+        if (metrics != null || event.shouldCommit()) loaded(uri, response.headers().firstValueAsLong("Content-Length").orElse(-1), playlist, start, metrics, event);
+        return playlist;
+    };
+
+    //  The body is parsed as it arrives : it is downloaded once the parser asks for the line after its last one
+    private static Stream<String> downloaded(Stream<String> body, long start, PlaylistMetrics metrics) {
+        Spliterator<String> lines = body.spliterator();
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<String>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private boolean downloaded;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super String> action) {
+                if (lines.tryAdvance(action)) return true;
+                if (!downloaded) metrics.time(PlaylistMetrics.Stage.DOWNLOAD, System.nanoTime() - start);
+                downloaded = true;
+                return false;
+            }
+        }, false).onClose(body::close);
+    }
+
+    public static Function<URI, Playlist> fromURI = fromURIWith.apply(parse);
+
+    //  The number of bytes is -1 when it isn't known, e.g. for a chunked response
+    private static void loaded(URI source, long bytes, Playlist playlist, long start, PlaylistMetrics metrics, PlaylistLoadEvent event) {
+        if (metrics != null) {
+            metrics.time(PlaylistMetrics.Stage.LOAD, System.nanoTime() - start);
+            if (bytes >= 0) metrics.bytes(bytes);
+        }
+        if (event.shouldCommit()) {
+            event.source = source.toString();
+            event.bytes = bytes;
+            event.lines = playlist.length();
+            event.segments = segments(playlist);
+            event.commit();
+        }
+    }
+
+    //  Media segments or variant streams
+    static long segments(Playlist playlist) {
+        return playlist instanceof MediaPlaylist media ? media.segments().size() : ((MasterPlaylist) playlist).variants().size();
+    }
+
+    //  The body is parsed as it arrives, the request is cancelled and its connection released as soon as a limit is exceeded
+    public static Function<Limits, Function<URI, Playlist>> fromURIWithLimits = limits -> uri -> {
+        PlaylistMetrics metrics = Instrumentation.metrics();
+        var event = new PlaylistLoadEvent();
+        event.begin();
+        long start = System.nanoTime();
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .GET()
+                .uri(uri);
+        if (limits.deadline() != null) request.timeout(limits.deadline());
+
+        CompletableFuture<HttpResponse<Playlist>> download = httpClient.sendAsync(request.build(), info -> {
+            playlist(uri, info.headers());
+            info.headers().firstValueAsLong("Content-Length").ifPresent(limits::bytes);
+            return new PlaylistSubscriber(new PlaylistListener() {}, limits, start);
+        });
         try {
-            HttpResponse<Stream<String>> response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
-            Predicate<String> isM3U = value -> value.equals("application/vnd.apple.mpegurl") || value.equals("audio/mpegurl");
-            if ( !uri.getPath().endsWith(".m3u8") && !uri.getPath().endsWith(".m3u") && !response.headers().allValues("Content-Type").stream().anyMatch(isM3U) ) throw new RuntimeException("The URI must end with either .m3u8 or .m3u or the Content-Type must be either 'application/vnd.apple.mpegurl' or 'audio/mpegurl'");
-            return parse.apply(response.body());
-        } catch (IOException | InterruptedException e) {
+            HttpResponse<Playlist> response = limits.deadline() == null ? download.get() : download.get(limits.deadline(start) - System.nanoTime(), TimeUnit.NANOSECONDS);
+            Playlist playlist = response.body();
+            if (metrics != null) {
+                //  The subscriber parses the body as it arrives, without the timings of PlaylistParser
+                metrics.time(PlaylistMetrics.Stage.DOWNLOAD, System.nanoTime() - start);
+                metrics.lines(playlist.length());
+                metrics.segments(segments(playlist));
+            }
+            if (metrics != null || event.shouldCommit()) loaded(uri, response.headers().firstValueAsLong("Content-Length").orElse(-1), playlist, start, metrics, event);
+            return playlist;
+        } catch (TimeoutException e) {
+            download.cancel(true);
+            throw new RuntimeException("The playlist located at " + uri + " wasn't read within its deadline of " + limits.deadline().toMillis() + "ms");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof HttpTimeoutException) throw new RuntimeException("The playlist located at " + uri + " wasn't read within its deadline of " + limits.deadline().toMillis() + "ms", cause);
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw new RuntimeException("Error while downloading the file from " + uri, cause);
+        } catch (InterruptedException e) {
+            download.cancel(true);
+            Thread.currentThread().interrupt();
             throw new RuntimeException("Error while downloading the file from " + uri, e);
         }
     };
 
+    //  The listener is told about the content of the playlist while it is being downloaded
+    public static Function<PlaylistListener, Function<URI, CompletableFuture<Playlist>>> fromURIAsync = listener -> uri -> {
+        HttpRequest request = HttpRequest.newBuilder()
+                .GET()
+                .uri(uri)
+                .build();
+
+        return httpClient.sendAsync(request, info -> {
+            playlist(uri, info.headers());
+            return new PlaylistSubscriber(listener);
+        }).thenApply(HttpResponse::body);
+    };
+
 }
@@ -0,0 +1,414 @@
+package com.aowss.m3u;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Function;
+
+import static com.aowss.m3u.SegmentStore.UNKNOWN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+//  A binary encoding of parsed playlists, read back without any text parsing nor validation
+//  Titles, attribute names and values, codecs, group ids and URIs are stored once in a string table and referred to by their index, 0 standing for null
+//  Segments are stored column by column : durations, titles, attributes, then URIs, so that each column is read in a single pass
+//  Integers are stored as variable length quantities, signed ones zigzag encoded, durations as milliseconds when that is exact
+//  The segments of a SegmentStore are followed by its flags, byte ranges and program date times, and are read back as a SegmentStore
+public class PlaylistSnapshot {
+
+    private static final int MAGIC = 0x4D335553;
+    private static final byte VERSION = 3;
+    private static final byte MEDIA = 0;
+    private static final byte MASTER = 1;
+
+    public static void write(Playlist playlist, Path path) {
+        try {
+            Files.write(path, encode(playlist));
+        } catch (IOException e) {
+            throw new RuntimeException("Error while writing the snapshot to " + path, e);
+        }
+    }
+
+    public static Function<Path, Playlist> fromSnapshot = path -> decode(map(path), false);
+
+    //  The segments of a media playlist are built when they are indexed, from the mapped file
+    public static Function<Path, Playlist> fromSnapshotLazily = path -> decode(map(path), true);
+
+    private static ByteBuffer map(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException("Error while reading the snapshot located at " + path, e);
+        }
+    }
+
+    static byte[] encode(Playlist playlist) {
+        var output = new Output();
+        output.writeInt(MAGIC);
+        output.write(VERSION);
+        switch (playlist) {
+            case MediaPlaylist media -> encode(media, output);
+            case MasterPlaylist master -> encode(master, output);
+        }
+        return output.toByteArray();
+    }
+
+    private static void encode(MediaPlaylist playlist, Output output) {
+        output.write(MEDIA);
+        output.writeSigned(playlist.length());
+        output.writeSigned(playlist.targetDuration());
+        output.writeSigned(playlist.mediaSequence());
+        output.write(playlist.endList() ? 1 : 0);
+        output.write(playlist.segments() instanceof SegmentStore ? 1 : 0);
+        var strings = new StringTable();
+        Map<Map<String, String>, Integer> attributes = new HashMap<>();
+        List<Map<String, String>> attributeSets = new ArrayList<>();
+        var segments = playlist.segments();
+        int[] titles = new int[segments.size()];
+        int[] sets = new int[segments.size()];
+        int[] uris = new int[segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            var segment = segments.get(i);
+            titles[i] = strings.index(segment.title());
+            uris[i] = strings.index(segment.uri().toString());
+            if (segment.attributes().isEmpty()) continue;
+            sets[i] = attributes.computeIfAbsent(segment.attributes(), set -> {
+                attributeSets.add(set);
+                return attributeSets.size();
+            });
+            segment.attributes().forEach((name, value) -> {
+                strings.index(name);
+                strings.index(value);
+            });
+        }
+        strings.write(output);
+        output.writeUnsigned(attributeSets.size());
+        for (Map<String, String> set : attributeSets) {
+            output.writeUnsigned(set.size());
+            set.forEach((name, value) -> {
+                output.writeUnsigned(strings.index(name));
+                output.writeUnsigned(strings.index(value));
+            });
+        }
+        output.writeUnsigned(segments.size());
+        for (MediaSegment segment : segments) writeDuration(segment.duration(), output);
+        for (int title : titles) output.writeUnsigned(title);
+        for (int set : sets) output.writeUnsigned(set);
+        for (int uri : uris) output.writeUnsigned(uri);
+        if (segments instanceof SegmentStore store) encodeColumns(store, output);
+    }
+
+    //  Unknown values are written as 0, others shifted by one, dates as the difference with the previous known one
+    private static void encodeColumns(SegmentStore store, Output output) {
+        for (int i = 0; i < store.size(); i++) output.write((store.discontinuity(i) ? 1 : 0) | (store.gap(i) ? 2 : 0));
+        for (int i = 0; i < store.size(); i++) output.writeUnsigned(store.byteRangeLength(i) == UNKNOWN ? 0 : store.byteRangeLength(i) + 1);
+        for (int i = 0; i < store.size(); i++) output.writeUnsigned(store.byteRangeOffset(i) == UNKNOWN ? 0 : store.byteRangeOffset(i) + 1);
+        long previous = 0;
+        for (int i = 0; i < store.size(); i++) {
+            long dateTime = store.programDateTime(i);
+            output.write(dateTime == UNKNOWN ? 0 : 1);
+            if (dateTime == UNKNOWN) continue;
+            output.writeSigned(dateTime - previous);
+            previous = dateTime;
+        }
+    }
+
+    private static void encode(MasterPlaylist playlist, Output output) {
+        output.write(MASTER);
+        output.writeSigned(playlist.length());
+        var strings = new StringTable();
+        for (VariantStream variant : playlist.variants()) {
+            strings.index(variant.codecs());
+            strings.index(variant.videoRange());
+            strings.index(variant.audio());
+            strings.index(variant.video());
+            strings.index(variant.subtitles());
+            strings.index(variant.closedCaptions());
+            strings.index(variant.uri().toString());
+        }
+        for (Rendition rendition : playlist.renditions()) {
+            for (String value : strings(rendition)) strings.index(value);
+        }
+        strings.write(output);
+        output.writeUnsigned(playlist.variants().size());
+        for (VariantStream variant : playlist.variants()) {
+            output.writeSigned(variant.bandwidth());
+            output.writeSigned(variant.averageBandwidth());
+            output.writeUnsigned(strings.index(variant.codecs()));
+            output.writeUnsigned(variant.resolution() == null ? 0 : 1);
+            if (variant.resolution() != null) {
+                output.writeUnsigned(variant.resolution().width());
+                output.writeUnsigned(variant.resolution().height());
+            }
+            output.writeLong(Double.doubleToLongBits(variant.frameRate()));
+            output.writeUnsigned(strings.index(variant.videoRange()));
+            output.writeUnsigned(strings.index(variant.audio()));
+            output.writeUnsigned(strings.index(variant.video()));
+            output.writeUnsigned(strings.index(variant.subtitles()));
+            output.writeUnsigned(strings.index(variant.closedCaptions()));
+            output.writeUnsigned(strings.index(variant.uri().toString()));
+        }
+        output.writeUnsigned(playlist.renditions().size());
+        for (Rendition rendition : playlist.renditions()) {
+            for (String value : strings(rendition)) output.writeUnsigned(strings.index(value));
+            output.write((rendition.defaultRendition() ? 1 : 0) | (rendition.autoselect() ? 2 : 0) | (rendition.forced() ? 4 : 0));
+        }
+    }
+
+    //  In the order they are decoded
+    private static String[] strings(Rendition rendition) {
+        return new String[] { rendition.type(), rendition.groupId(), rendition.name(), rendition.language(), rendition.assocLanguage(),
+                rendition.instreamId(), rendition.characteristics(), rendition.channels(), rendition.uri() == null ? null : rendition.uri().toString() };
+    }
+
+    //  The lowest bit tells whether the value is a number of milliseconds or the bits of the float
+    private static void writeDuration(float duration, Output output) {
+        long milliseconds = Math.round((double) duration * 1000);
+        if ((float) (milliseconds / 1000.0) == duration) output.writeSigned(milliseconds << 1);
+        else output.writeSigned((long) Float.floatToIntBits(duration) << 1 | 1);
+    }
+
+    private static float readDuration(Input input) {
+        long value = input.readSigned();
+        return (value & 1) == 0 ? (float) ((value >> 1) / 1000.0) : Float.intBitsToFloat((int) (value >> 1));
+    }
+
+    static Playlist decode(ByteBuffer buffer) {
+        return decode(buffer, false);
+    }
+
+    static Playlist decode(ByteBuffer buffer, boolean lazily) {
+        var input = new Input(buffer);
+        if (buffer.remaining() < 6 || input.buffer.getInt() != MAGIC) throw new RuntimeException("The file isn't a playlist snapshot");
+        byte version = input.buffer.get();
+        if (version != VERSION) throw new RuntimeException("Unsupported snapshot version " + version);
+        return input.buffer.get() == MEDIA ? decodeMedia(input, lazily) : decodeMaster(input);
+    }
+
+    private static MediaPlaylist decodeMedia(Input input, boolean lazily) {
+        long length = input.readSigned();
+        long targetDuration = input.readSigned();
+        long mediaSequence = input.readSigned();
+        boolean endList = input.buffer.get() == 1;
+        boolean columnar = input.buffer.get() == 1;
+        Strings strings = input.readStrings();
+        List<Map<String, String>> attributeSets = new ArrayList<>();
+        attributeSets.add(Map.of());
+        int setCount = (int) input.readUnsigned();
+        for (int i = 0; i < setCount; i++) {
+            int size = (int) input.readUnsigned();
+            Map<String, String> set = new HashMap<>();
+            for (int j = 0; j < size; j++) set.put(strings.get((int) input.readUnsigned()), strings.get((int) input.readUnsigned()));
+            //  Shared by all the segments with the same attributes
+            attributeSets.add(Collections.unmodifiableMap(set));
+        }
+        int size = (int) input.readUnsigned();
+        float[] durations = new float[size];
+        for (int i = 0; i < size; i++) durations[i] = readDuration(input);
+        int[] titles = input.readIndexes(size);
+        int[] sets = input.readIndexes(size);
+        int[] uris = input.readIndexes(size);
+        var segments = new SegmentColumns(strings, attributeSets, durations, titles, sets, uris);
+        if (columnar) return new MediaPlaylist(length, targetDuration, mediaSequence, endList, decodeColumns(input, mediaSequence, segments));
+        return new MediaPlaylist(length, targetDuration, mediaSequence, endList, lazily ? segments : Collections.unmodifiableList(new ArrayList<>(segments)));
+    }
+
+    //  The strings of a store are decoded upfront, whether the snapshot is read lazily or not
+    private static SegmentStore decodeColumns(Input input, long mediaSequence, SegmentColumns segments) {
+        int size = segments.size();
+        byte[] flags = new byte[size];
+        input.buffer.get(flags);
+        long[] lengths = input.readValues(size);
+        long[] offsets = input.readValues(size);
+        var store = new SegmentStore();
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            long dateTime = UNKNOWN;
+            if (input.buffer.get() == 1) {
+                dateTime = previous + input.readSigned();
+                previous = dateTime;
+            }
+            MediaSegment segment = segments.get(i);
+            store.add(mediaSequence + i, segment.duration(), segment.attributes(), segment.title(), segment.uri(), (flags[i] & 1) != 0, (flags[i] & 2) != 0,
+                    lengths[i] == 0 ? UNKNOWN : lengths[i] - 1, offsets[i] == 0 ? UNKNOWN : offsets[i] - 1, dateTime);
+        }
+        return store;
+    }
+
+    private static MasterPlaylist decodeMaster(Input input) {
+        long length = input.readSigned();
+        Strings strings = input.readStrings();
+        int size = (int) input.readUnsigned();
+        List<VariantStream> variants = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            long bandwidth = input.readSigned();
+            long averageBandwidth = input.readSigned();
+            String codecs = strings.get((int) input.readUnsigned());
+            Resolution resolution = input.readUnsigned() == 0 ? null : new Resolution((int) input.readUnsigned(), (int) input.readUnsigned());
+            double frameRate = Double.longBitsToDouble(input.buffer.getLong());
+            String videoRange = strings.get((int) input.readUnsigned());
+            String audio = strings.get((int) input.readUnsigned());
+            String video = strings.get((int) input.readUnsigned());
+            String subtitles = strings.get((int) input.readUnsigned());
+            String closedCaptions = strings.get((int) input.readUnsigned());
+            URI uri = URI.create(strings.get((int) input.readUnsigned()));
+            variants.add(new VariantStream(bandwidth, averageBandwidth, codecs, resolution, frameRate, videoRange, audio, video, subtitles, closedCaptions, uri));
+        }
+        int count = (int) input.readUnsigned();
+        List<Rendition> renditions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String[] values = new String[9];
+            for (int j = 0; j < values.length; j++) values[j] = strings.get((int) input.readUnsigned());
+            byte flags = input.buffer.get();
+            renditions.add(new Rendition(values[0], values[1], values[2], values[3], values[4], (flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0,
+                    values[5], values[6], values[7], values[8] == null ? null : URI.create(values[8])));
+        }
+        return new MasterPlaylist(length, Collections.unmodifiableList(variants), Collections.unmodifiableList(renditions));
+    }
+
+    //  The segments are only built, and their strings decoded, when they are indexed
+    private static class SegmentColumns extends AbstractList<MediaSegment> implements RandomAccess {
+        private final Strings strings;
+        private final List<Map<String, String>> attributeSets;
+        private final float[] durations;
+        private final int[] titles;
+        private final int[] sets;
+        private final int[] uris;
+
+        SegmentColumns(Strings strings, List<Map<String, String>> attributeSets, float[] durations, int[] titles, int[] sets, int[] uris) {
+            this.strings = strings;
+            this.attributeSets = attributeSets;
+            this.durations = durations;
+            this.titles = titles;
+            this.sets = sets;
+            this.uris = uris;
+        }
+
+        @Override
+        public MediaSegment get(int index) {
+            return new MediaSegment(durations[index], attributeSets.get(sets[index]), strings.get(titles[index]), URI.create(strings.get(uris[index])));
+        }
+
+        @Override
+        public int size() {
+            return durations.length;
+        }
+    }
+
+    //  The string table stays in the buffer, each string is decoded the first time it is used
+    private static class Strings {
+        private final ByteBuffer buffer;
+        private final int[] offsets;
+        private final int[] lengths;
+        private final String[] decoded;
+
+        Strings(ByteBuffer buffer, int[] offsets, int[] lengths) {
+            this.buffer = buffer;
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.decoded = new String[offsets.length];
+        }
+
+        //  Index 0 is null
+        String get(int index) {
+            if (index == 0) return null;
+            String string = decoded[index];
+            if (string == null) {
+                string = UTF_8.decode(buffer.slice(offsets[index], lengths[index])).toString();
+                decoded[index] = string;
+            }
+            return string;
+        }
+    }
+
+    private static class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        int index(String value) {
+            if (value == null) return 0;
+            return indexes.computeIfAbsent(value, string -> {
+                strings.add(string);
+                return strings.size();
+            });
+        }
+
+        void write(Output output) {
+            output.writeUnsigned(strings.size());
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(UTF_8);
+                output.writeUnsigned(bytes.length);
+                output.write(bytes, 0, bytes.length);
+            }
+        }
+    }
+
+    private static class Output extends ByteArrayOutputStream {
+
+        void writeUnsigned(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeSigned(long value) {
+            writeUnsigned(value << 1 ^ value >> 63);
+        }
+
+        void writeInt(int value) {
+            for (int shift = 24; shift >= 0; shift -= 8) write(value >>> shift);
+        }
+
+        void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) write((int) (value >>> shift));
+        }
+    }
+
+    private record Input(ByteBuffer buffer) {
+
+        long readUnsigned() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+        }
+
+        long readSigned() {
+            long value = readUnsigned();
+            return value >>> 1 ^ -(value & 1);
+        }
+
+        Strings readStrings() {
+            int count = (int) readUnsigned() + 1;
+            int[] offsets = new int[count];
+            int[] lengths = new int[count];
+            for (int i = 1; i < count; i++) {
+                lengths[i] = (int) readUnsigned();
+                offsets[i] = buffer.position();
+                buffer.position(offsets[i] + lengths[i]);
+            }
+            return new Strings(buffer, offsets, lengths);
+        }
+
+        int[] readIndexes(int size) {
+            int[] indexes = new int[size];
+            for (int i = 0; i < size; i++) indexes[i] = (int) readUnsigned();
+            return indexes;
+        }
+
+        long[] readValues(int size) {
+            long[] values = new long[size];
+            for (int i = 0; i < size; i++) values[i] = readUnsigned();
+            return values;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.aowss.m3u;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+import static com.aowss.m3u.CharSequences.indexOf;
+import static com.aowss.m3u.CharSequences.startsWith;
+
+//  Parses a playlist as the buffers of its body arrive and reports its content to a listener, before the whole body has been received
+//  Only complete lines are parsed : the end of a buffer is kept until the next one completes its last line, the other lines are parsed in place
+public class PlaylistSubscriber implements HttpResponse.BodySubscriber<Playlist> {
+
+    private final PlaylistListener listener;
+    private final CompletableFuture<Playlist> body = new CompletableFuture<>();
+    private final PlaylistBuilder builder = new PlaylistBuilder();
+    //  One for the whole body, so that its decoder and line numbers carry over from one buffer to the next
+    private final PlaylistTokenizer tokenizer = new PlaylistTokenizer(ByteBuffer.allocate(0), 0);
+    private final Limits limits;
+    private final long deadline;
+    private long bytes;
+    private Flow.Subscription subscription;
+    //  The beginning of a line that isn't terminated yet
+    private byte[] partial = new byte[256];
+    private int partialLength;
+    private long copied;
+
+    public PlaylistSubscriber(PlaylistListener listener) {
+        this(listener, Limits.NONE);
+    }
+
+    //  The subscription is cancelled as soon as a limit is exceeded, so the rest of the body isn't downloaded
+    public PlaylistSubscriber(PlaylistListener listener, Limits limits) {
+        this(listener, limits, System.nanoTime());
+    }
+
+    PlaylistSubscriber(PlaylistListener listener, Limits limits, long start) {
+        this.listener = listener;
+        this.limits = limits;
+        this.deadline = limits.deadline(start);
+        builder.limit(limits);
+    }
+
+    @Override
+    public CompletionStage<Playlist> getBody() {
+        return body;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        try {
+            limits.expired(deadline);
+            for (ByteBuffer buffer : buffers) {
+                bytes += buffer.remaining();
+                limits.bytes(bytes);
+                accept(buffer);
+            }
+        } catch (RuntimeException e) {
+            subscription.cancel();
+            body.completeExceptionally(e);
+            return;
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        body.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (body.isDone()) return;
+        try {
+            if (partialLength > 0) parse(ByteBuffer.wrap(partial, 0, partialLength));
+            body.complete(builder.build());
+        } catch (RuntimeException e) {
+            body.completeExceptionally(e);
+        }
+    }
+
+    private void accept(ByteBuffer buffer) {
+        int from = buffer.position();
+        if (partialLength > 0) {
+            //  Only the line that was carried over is completed in the partial bytes
+            int first = firstLineEnd(buffer);
+            if (first == -1) {
+                keep(buffer, from, buffer.limit());
+                limits.lineLength(tokenizer.lineNumber() + 1, partialLength);
+                return;
+            }
+            keep(buffer, from, first);
+            parse(ByteBuffer.wrap(partial, 0, partialLength));
+            partialLength = 0;
+            from = first;
+        }
+        int end = lastLineEnd(buffer, from);
+        if (end == -1) {
+            keep(buffer, from, buffer.limit());
+        } else {
+            parse(buffer.slice(from, end - from));
+            keep(buffer, end, buffer.limit());
+        }
+        //  What is left is the beginning of a single line, which mustn't grow without bound
+        limits.lineLength(tokenizer.lineNumber() + 1, partialLength);
+    }
+
+    //  Position following the first line terminator, a CR at the very end may be the first half of a CR LF
+    private static int firstLineEnd(ByteBuffer buffer) {
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            byte b = buffer.get(i);
+            if (b == '\n') return i + 1;
+            if (b == '\r' && i < buffer.limit() - 1) return buffer.get(i + 1) == '\n' ? i + 2 : i + 1;
+        }
+        return -1;
+    }
+
+    //  Position following the last line terminator, a CR at the very end may be the first half of a CR LF
+    private static int lastLineEnd(ByteBuffer buffer, int from) {
+        for (int i = buffer.limit() - 1; i >= from; i--) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r' && i < buffer.limit() - 1) return i + 1;
+        }
+        return -1;
+    }
+
+    private void keep(ByteBuffer buffer, int from, int to) {
+        int length = to - from;
+        if (partialLength + length > partial.length) partial = Arrays.copyOf(partial, Math.max(partialLength + length, partial.length * 2));
+        buffer.get(from, partial, partialLength, length);
+        partialLength += length;
+        copied += length;
+    }
+
+    private void parse(ByteBuffer lines) {
+        tokenizer.resume(lines);
+        while (tokenizer.next()) {
+            limits.lineLength(tokenizer.lineNumber(), tokenizer.end() - tokenizer.start());
+            int segments = builder.segments().size();
+            int variants = builder.variants().size();
+            builder.accept(tokenizer);
+            if (tokenizer.charAt(0) == '#') tag(tokenizer);
+            if (builder.segments().size() > segments) listener.segment(builder.mediaSequence() + segments, builder.segments().get(segments));
+            if (builder.variants().size() > variants) listener.variant(builder.variants().get(variants));
+        }
+    }
+
+    //  Number of bytes copied to complete the lines split across buffers
+    long copied() {
+        return copied;
+    }
+
+    private void tag(PlaylistTokenizer tokenizer) {
+        long number = tokenizer.lineNumber();
+        int colon = indexOf(tokenizer, ':', 1, tokenizer.length());
+        listener.tag(number, tokenizer.subSequence(1, colon == -1 ? tokenizer.length() : colon), colon == -1 ? null : tokenizer.subSequence(colon + 1, tokenizer.length()));
+        if (startsWith(tokenizer, "#EXTINF:")) {
+            for (Map.Entry<String, String> attribute : builder.pendingSegment().attributes().entrySet()) listener.attribute(number, attribute.getKey(), attribute.getValue());
+        } else if (startsWith(tokenizer, "#EXT-X-STREAM-INF:")) {
+            var attributes = builder.attributes();
+            for (int i = 0; i < attributes.size(); i++) listener.attribute(number, attributes.name(i), attributes.value(i));
+        }
+    }
+}
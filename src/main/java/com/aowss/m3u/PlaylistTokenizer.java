@@ -0,0 +1,213 @@
+package com.aowss.m3u;
+
+import com.aowss.m3u.Diagnostics.Rule;
+
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.text.Normalizer;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+//  Walks the lines of a UTF-8 playlist straight from its bytes, applying the same checks as the Validator
+//  The tokenizer is itself a view of the current line : only pure ASCII lines are read in place, others are decoded once
+public class PlaylistTokenizer implements CharSequence {
+
+    private ByteBuffer buffer;
+    private final Diagnostics diagnostics;
+    private final CharsetDecoder decoder = UTF_8.newDecoder();
+    private byte[] scratch = new byte[256];
+
+    private int position;
+    private long lineNumber;
+    private int start;
+    private int end;
+    private boolean invalidCharacters;
+    private boolean malformed;
+    private String decoded;
+    private String content;
+    private URI uri;
+
+    public PlaylistTokenizer(ByteBuffer buffer) {
+        this(buffer, 0);
+    }
+
+    //  Lines that break a rule are skipped when the diagnostics don't throw
+    public PlaylistTokenizer(ByteBuffer buffer, Diagnostics diagnostics) {
+        this(buffer, 0, diagnostics);
+    }
+
+    //  For a buffer that starts after the given number of lines, e.g. a chunk of a larger playlist
+    PlaylistTokenizer(ByteBuffer buffer, long lineNumber) {
+        this(buffer, lineNumber, Diagnostics.STRICT);
+    }
+
+    private PlaylistTokenizer(ByteBuffer buffer, long lineNumber, Diagnostics diagnostics) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.lineNumber = lineNumber;
+        this.diagnostics = diagnostics;
+    }
+
+    //  Starts over on another buffer, keeping the decoder and the scratch bytes
+    PlaylistTokenizer reset(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.lineNumber = 0;
+        this.decoded = null;
+        this.content = null;
+        this.uri = null;
+        return this;
+    }
+
+    //  Moves on to the next chunk of the same playlist : the line numbers go on from the previous one
+    PlaylistTokenizer resume(ByteBuffer buffer) {
+        long lineNumber = this.lineNumber;
+        reset(buffer);
+        this.lineNumber = lineNumber;
+        return this;
+    }
+
+    public boolean next() {
+        while (position < buffer.limit() && !diagnostics.limitReached()) {
+            readLine();
+            if (validate()) return true;
+        }
+        return false;
+    }
+
+    public long lineNumber() {
+        return lineNumber;
+    }
+
+    public URI uri() {
+        return uri;
+    }
+
+    //  Position of the current line in the buffer, terminator excluded
+    int start() {
+        return start;
+    }
+
+    int end() {
+        return end;
+    }
+
+    //  Number of line terminators between the two positions, CR LF counting as one
+    static long countLines(ByteBuffer buffer, int from, int to) {
+        long lines = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r' && (i + 1 == to || buffer.get(i + 1) != '\n')) lines++;
+        }
+        return lines;
+    }
+
+    private void readLine() {
+        int limit = buffer.limit();
+        int i = position;
+        boolean ascii = true;
+        invalidCharacters = false;
+        for (; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') break;
+            if (b < 0) {
+                ascii = false;
+                //  U+0080 to U+009F are encoded as 0xC2 0x80 to 0xC2 0x9F
+                if (b == (byte) 0xC2 && i + 1 < limit && (buffer.get(i + 1) & 0xE0) == 0x80) invalidCharacters = true;
+            } else if (b < 0x20 || b == 0x7F) {
+                invalidCharacters = true;
+            }
+        }
+        start = position;
+        end = i;
+        if (i + 1 < limit && buffer.get(i) == '\r' && buffer.get(i + 1) == '\n') i++;
+        position = Math.min(i + 1, limit);
+        lineNumber++;
+        content = null;
+        uri = null;
+        malformed = false;
+        decoded = ascii ? null : decode();
+    }
+
+    private String decode() {
+        try {
+            return decoder.decode(buffer.slice(start, end - start)).toString();
+        } catch (CharacterCodingException e) {
+            if (diagnostics.strict()) throw new UncheckedIOException(e);
+            malformed = true;
+            return null;
+        }
+    }
+
+    private boolean validate() {
+        if (lineNumber == 1 && end - start >= 3 && buffer.get(start) == (byte) 0xEF && buffer.get(start + 1) == (byte) 0xBB && buffer.get(start + 2) == (byte) 0xBF) {
+            diagnostics.report(lineNumber, Rule.BOM, "The file starts with a BOM");
+            start += 3;
+            if (decoded != null) decoded = decoded.substring(1);
+        }
+        if (lineNumber == 1 && !CharSequences.contentEquals(this, "#EXTM3U")) diagnostics.report(lineNumber, Rule.NO_EXTM3U, "The file must start with the EXTM3U tag");
+        if (malformed) {
+            diagnostics.report(lineNumber, Rule.NOT_UTF8, "Line " + lineNumber + " isn't UTF-8 encoded");
+            return false;
+        }
+        if (isBlank()) return false;
+        if (charAt(0) == '#') {
+            if (length() < 4 || !CharSequences.startsWith(this, "#EXT")) return false;
+        } else {
+            try {
+                uri = new URI(toString());
+            } catch (URISyntaxException use) {
+                diagnostics.report(lineNumber, Rule.INVALID_LINE, "Line " + lineNumber + " is invalid");
+                return false;
+            }
+        }
+        if (invalidCharacters) {
+            diagnostics.report(lineNumber, Rule.INVALID_CHARACTERS, "Line " + lineNumber + " contains one or more invalid characters");
+            return false;
+        }
+        if (decoded != null && !Normalizer.isNormalized(decoded, Normalizer.Form.NFC)) {
+            diagnostics.report(lineNumber, Rule.NOT_NFC_NORMALIZED, "Line " + lineNumber + " isn't NFC-normalized");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isBlank() {
+        if (decoded != null) return decoded.isBlank();
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(buffer.get(i))) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int length() {
+        return decoded != null ? decoded.length() : end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return decoded != null ? decoded.charAt(index) : (char) buffer.get(start + index);
+    }
+
+    //  Only materializes the requested range, the rest of the line stays in the buffer
+    @Override
+    public String subSequence(int from, int to) {
+        if (decoded != null) return decoded.substring(from, to);
+        int length = to - from;
+        if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+        buffer.get(start + from, scratch, 0, length);
+        return new String(scratch, 0, length, ISO_8859_1);
+    }
+
+    @Override
+    public String toString() {
+        if (content == null) content = decoded != null ? decoded : subSequence(0, end - start);
+        return content;
+    }
+}
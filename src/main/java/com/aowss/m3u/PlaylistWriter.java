@@ -0,0 +1,219 @@
+package com.aowss.m3u;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static com.aowss.m3u.SegmentStore.UNKNOWN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+//  Renders playlists back to https://tools.ietf.org/html/rfc8216 text
+//  A writer isn't thread-safe : it reuses its buffer from one playlist to the next and keeps the bytes of the segments and variants of the last playlist it wrote,
+//  so that writing the next version of a live window, which shares its segments with the previous one, only renders the segments that were added
+public class PlaylistWriter {
+
+    private final ByteBuffer buffer;
+    //  By identity, so that looking a segment up doesn't hash all of its fields : the segments of a SegmentStore are built on each access, so they are never kept
+    private Map<Record, byte[]> rendered = new IdentityHashMap<>();
+    private Map<Record, byte[]> rendering = new IdentityHashMap<>();
+    private int renders;
+
+    public PlaylistWriter() {
+        this(64 * 1024);
+    }
+
+    public PlaylistWriter(int bufferSize) {
+        if (bufferSize < 1) throw new RuntimeException("The buffer must be able to hold at least one byte");
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    public void write(Playlist playlist, OutputStream output) {
+        write(playlist, Channels.newChannel(output));
+    }
+
+    public void write(Playlist playlist, WritableByteChannel channel) {
+        buffer.clear();
+        rendering.clear();
+        renders = 0;
+        try {
+            put("#EXTM3U\n", channel);
+            int version = version(playlist);
+            if (version > 0) put("#EXT-X-VERSION:" + version + "\n", channel);
+            switch (playlist) {
+                case MediaPlaylist media -> write(media, channel);
+                case MasterPlaylist master -> write(master, channel);
+            }
+            flush(channel);
+            var written = rendered;
+            rendered = rendering;
+            rendering = written;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String toString(Playlist playlist) {
+        var output = new ByteArrayOutputStream();
+        write(playlist, output);
+        return output.toString(UTF_8);
+    }
+
+    private void write(MediaPlaylist playlist, WritableByteChannel channel) throws IOException {
+        if (playlist.targetDuration() > 0) put("#EXT-X-TARGETDURATION:" + playlist.targetDuration() + "\n", channel);
+        if (playlist.mediaSequence() > 0) put("#EXT-X-MEDIA-SEQUENCE:" + playlist.mediaSequence() + "\n", channel);
+        if (playlist.segments() instanceof SegmentStore store) {
+            for (int i = 0; i < store.size(); i++) {
+                tags(store, i, channel);
+                renders++;
+                put(render(store.get(i)), channel);
+            }
+        } else {
+            for (MediaSegment segment : playlist.segments()) {
+                put(bytes(segment, PlaylistWriter::render), channel);
+            }
+        }
+        if (playlist.endList()) put("#EXT-X-ENDLIST\n", channel);
+    }
+
+    private void write(MasterPlaylist playlist, WritableByteChannel channel) throws IOException {
+        for (Rendition rendition : playlist.renditions()) {
+            put(bytes(rendition, PlaylistWriter::render), channel);
+        }
+        for (VariantStream variant : playlist.variants()) {
+            put(bytes(variant, PlaylistWriter::render), channel);
+        }
+    }
+
+    //  The media segment tags the columns of a store hold for one of its segments, written before its EXTINF tag
+    //  A date that follows from the one of the previous segment is left implicit, as it is read back the same
+    private void tags(SegmentStore store, int i, WritableByteChannel channel) throws IOException {
+        if (store.discontinuity(i)) put("#EXT-X-DISCONTINUITY\n", channel);
+        long dateTime = store.programDateTime(i);
+        if (dateTime != UNKNOWN && (i == 0 || store.discontinuity(i) || store.programDateTime(i - 1) == UNKNOWN || dateTime != store.programDateTime(i - 1) + Math.round(store.duration(i - 1) * 1000.0))) {
+            put("#EXT-X-PROGRAM-DATE-TIME:" + DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(Instant.ofEpochMilli(dateTime).atOffset(ZoneOffset.UTC)) + "\n", channel);
+        }
+        if (store.byteRangeLength(i) != UNKNOWN) put("#EXT-X-BYTERANGE:" + store.byteRangeLength(i) + (store.byteRangeOffset(i) != UNKNOWN ? "@" + store.byteRangeOffset(i) : "") + "\n", channel);
+        if (store.gap(i)) put("#EXT-X-GAP\n", channel);
+    }
+
+    //  Byte ranges require version 4, decimal-floating-point durations and frame rates version 3 : https://tools.ietf.org/html/rfc8216#section-7
+    private static int version(Playlist playlist) {
+        if (playlist instanceof MasterPlaylist master) {
+            for (VariantStream variant : master.variants()) {
+                if (variant.frameRate() != (long) variant.frameRate()) return 3;
+            }
+            return 0;
+        }
+        int version = 0;
+        if (((MediaPlaylist) playlist).segments() instanceof SegmentStore store) {
+            for (int i = 0; i < store.size(); i++) {
+                if (store.byteRangeLength(i) != UNKNOWN) return 4;
+                if (store.duration(i) != (long) store.duration(i)) version = 3;
+            }
+            return version;
+        }
+        for (MediaSegment segment : ((MediaPlaylist) playlist).segments()) {
+            if (segment.duration() != (long) segment.duration()) return 3;
+        }
+        return 0;
+    }
+
+    //  The bytes written for the same instance by the previous write, rendered otherwise
+    private <T extends Record> byte[] bytes(T record, Function<T, byte[]> render) {
+        byte[] bytes = rendered.get(record);
+        if (bytes == null) {
+            bytes = render.apply(record);
+            renders++;
+        }
+        rendering.put(record, bytes);
+        return bytes;
+    }
+
+    //  Number of segments and variants the last write had to render
+    int rendered() {
+        return renders;
+    }
+
+    static byte[] render(MediaSegment segment) {
+        var line = new StringBuilder("#EXTINF:");
+        decimal(line, segment.duration());
+        segment.attributes().forEach((name, value) -> line.append(' ').append(name).append("=\"").append(value).append('"'));
+        return line.append(',').append(segment.title()).append('\n').append(segment.uri()).append('\n').toString().getBytes(UTF_8);
+    }
+
+    static byte[] render(VariantStream variant) {
+        var line = new StringBuilder("#EXT-X-STREAM-INF:BANDWIDTH=").append(variant.bandwidth());
+        if (variant.averageBandwidth() > 0) line.append(",AVERAGE-BANDWIDTH=").append(variant.averageBandwidth());
+        if (variant.codecs() != null) line.append(",CODECS=\"").append(variant.codecs()).append('"');
+        if (variant.resolution() != null) line.append(",RESOLUTION=").append(variant.resolution().width()).append('x').append(variant.resolution().height());
+        if (variant.frameRate() > 0) decimal(line.append(",FRAME-RATE="), variant.frameRate());
+        if (variant.videoRange() != null) line.append(",VIDEO-RANGE=").append(variant.videoRange());
+        if (variant.audio() != null) line.append(",AUDIO=\"").append(variant.audio()).append('"');
+        if (variant.video() != null) line.append(",VIDEO=\"").append(variant.video()).append('"');
+        if (variant.subtitles() != null) line.append(",SUBTITLES=\"").append(variant.subtitles()).append('"');
+        if ("NONE".equals(variant.closedCaptions())) line.append(",CLOSED-CAPTIONS=NONE");
+        else if (variant.closedCaptions() != null) line.append(",CLOSED-CAPTIONS=\"").append(variant.closedCaptions()).append('"');
+        return line.append('\n').append(variant.uri()).append('\n').toString().getBytes(UTF_8);
+    }
+
+    static byte[] render(Rendition rendition) {
+        var line = new StringBuilder("#EXT-X-MEDIA:TYPE=").append(rendition.type());
+        line.append(",GROUP-ID=\"").append(rendition.groupId()).append('"');
+        if (rendition.language() != null) line.append(",LANGUAGE=\"").append(rendition.language()).append('"');
+        if (rendition.assocLanguage() != null) line.append(",ASSOC-LANGUAGE=\"").append(rendition.assocLanguage()).append('"');
+        line.append(",NAME=\"").append(rendition.name()).append('"');
+        if (rendition.defaultRendition()) line.append(",DEFAULT=YES");
+        if (rendition.autoselect()) line.append(",AUTOSELECT=YES");
+        if (rendition.forced()) line.append(",FORCED=YES");
+        if (rendition.instreamId() != null) line.append(",INSTREAM-ID=\"").append(rendition.instreamId()).append('"');
+        if (rendition.characteristics() != null) line.append(",CHARACTERISTICS=\"").append(rendition.characteristics()).append('"');
+        if (rendition.channels() != null) line.append(",CHANNELS=\"").append(rendition.channels()).append('"');
+        if (rendition.uri() != null) line.append(",URI=\"").append(rendition.uri()).append('"');
+        return line.append('\n').toString().getBytes(UTF_8);
+    }
+
+    //  Whole numbers don't get a fractional part, as required before version 3, and no number gets an exponent, which decimal-floating-point doesn't allow
+    private static void decimal(StringBuilder line, double value) {
+        if (value == (long) value) line.append((long) value);
+        else line.append(BigDecimal.valueOf(value).stripTrailingZeros().toPlainString());
+    }
+
+    //  The shortest decimal form of the float, not the one of its widening to a double : 9.009f is written 9.009
+    private static void decimal(StringBuilder line, float value) {
+        if (value == (long) value) line.append((long) value);
+        else line.append(new BigDecimal(Float.toString(value)).stripTrailingZeros().toPlainString());
+    }
+
+    private void put(String ascii, WritableByteChannel channel) throws IOException {
+        for (int i = 0; i < ascii.length(); i++) {
+            if (!buffer.hasRemaining()) flush(channel);
+            buffer.put((byte) ascii.charAt(i));
+        }
+    }
+
+    private void put(byte[] bytes, WritableByteChannel channel) throws IOException {
+        for (int offset = 0; offset < bytes.length; ) {
+            if (!buffer.hasRemaining()) flush(channel);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void flush(WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,35 @@
+package com.aowss.m3u;
+
+import java.net.URI;
+
+import static com.aowss.m3u.CharSequences.startsWith;
+
+//  An alternative rendition from an EXT-X-MEDIA tag ( https://tools.ietf.org/html/rfc8216#section-4.3.4.1 ), the uri is null when the rendition is part of the variant streams
+public record Rendition(String type, String groupId, String name, String language, String assocLanguage, boolean defaultRendition, boolean autoselect,
+                        boolean forced, String instreamId, String characteristics, String channels, URI uri) {
+
+    static Rendition parse(long lineNumber, CharSequence tag, AttributeList attributes) {
+        if (!startsWith(tag, "#EXT-X-MEDIA:")) throw new RuntimeException("A rendition must start with an EXT-X-MEDIA tag");
+        attributes.parse(tag, 13, tag.length());
+        String type = attributes.getEnumeratedString("TYPE");
+        if (type == null) throw new RuntimeException("Line " + lineNumber + " : the EXT-X-MEDIA tag must have a TYPE attribute");
+        if (!type.equals("AUDIO") && !type.equals("VIDEO") && !type.equals("SUBTITLES") && !type.equals("CLOSED-CAPTIONS")) throw new RuntimeException("Line " + lineNumber + " : the TYPE attribute must be either AUDIO, VIDEO, SUBTITLES or CLOSED-CAPTIONS");
+        if (!attributes.has("GROUP-ID")) throw new RuntimeException("Line " + lineNumber + " : the EXT-X-MEDIA tag must have a GROUP-ID attribute");
+        if (!attributes.has("NAME")) throw new RuntimeException("Line " + lineNumber + " : the EXT-X-MEDIA tag must have a NAME attribute");
+        String uri = attributes.getQuotedString("URI");
+        return new Rendition(
+                type,
+                attributes.getQuotedString("GROUP-ID"),
+                attributes.getQuotedString("NAME"),
+                attributes.getQuotedString("LANGUAGE"),
+                attributes.getQuotedString("ASSOC-LANGUAGE"),
+                attributes.is("DEFAULT", "YES"),
+                attributes.is("AUTOSELECT", "YES"),
+                attributes.is("FORCED", "YES"),
+                attributes.getQuotedString("INSTREAM-ID"),
+                attributes.getQuotedString("CHARACTERISTICS"),
+                attributes.getQuotedString("CHANNELS"),
+                uri == null ? null : URI.create(uri)
+        );
+    }
+}
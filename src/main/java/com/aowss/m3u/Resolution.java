@@ -0,0 +1,4 @@
+package com.aowss.m3u;
+
+public record Resolution(int width, int height) {
+}
@@ -0,0 +1,217 @@
+package com.aowss.m3u;
+
+import java.net.URI;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import static com.aowss.m3u.CharSequences.contentEquals;
+import static com.aowss.m3u.CharSequences.startsWith;
+
+//  The segments of a media playlist stored column by column, each column being an array of primitives
+//  Segments are only built when they are indexed, computations over the whole playlist loop over the columns
+//  The columns also hold what the tags preceding each EXTINF tag say about its segment : https://tools.ietf.org/html/rfc8216#section-4.3.2
+public class SegmentStore extends AbstractList<MediaSegment> implements RandomAccess {
+
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static final byte DISCONTINUITY = 1;
+    private static final byte GAP = 2;
+
+    private int size;
+    private float[] durations = new float[64];
+    private long[] sequenceNumbers = new long[64];
+    private long[] byteRangeLengths = new long[64];
+    private long[] byteRangeOffsets = new long[64];
+    //  Milliseconds since the epoch, either given by an EXT-X-PROGRAM-DATE-TIME tag or following from the previous segment
+    private long[] programDateTimes = new long[64];
+    private byte[] flags = new byte[64];
+    private String[] titles = new String[64];
+    private Map<String, String>[] attributes = newAttributes(64);
+    private URI[] uris = new URI[64];
+
+    //  What the tags read so far say about the next segment
+    private byte nextFlags;
+    private long nextByteRangeLength = UNKNOWN;
+    private long nextByteRangeOffset = UNKNOWN;
+    private long nextProgramDateTime = UNKNOWN;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<String, String>[] newAttributes(int size) {
+        return new Map[size];
+    }
+
+    //  A malformed tag throws and leaves what is known about the next segment unchanged
+    void tag(long lineNumber, CharSequence content) {
+        if (contentEquals(content, "#EXT-X-DISCONTINUITY")) {
+            nextFlags |= DISCONTINUITY;
+        } else if (contentEquals(content, "#EXT-X-GAP")) {
+            nextFlags |= GAP;
+        } else if (startsWith(content, "#EXT-X-BYTERANGE:")) {
+            int at = CharSequences.indexOf(content, '@', 17, content.length());
+            try {
+                long length = CharSequences.decimalInteger(content, 17, at == -1 ? content.length() : at);
+                nextByteRangeOffset = at == -1 ? UNKNOWN : CharSequences.decimalInteger(content, at + 1, content.length());
+                nextByteRangeLength = length;
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Line " + lineNumber + " : the byte range must be a decimal-integer optionally followed by '@' and a decimal-integer", e);
+            }
+        } else if (startsWith(content, "#EXT-X-PROGRAM-DATE-TIME:")) {
+            try {
+                nextProgramDateTime = OffsetDateTime.parse(content.subSequence(25, content.length())).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                throw new RuntimeException("Line " + lineNumber + " : the program date time must be an ISO 8601 date-time with a time zone", e);
+            }
+        }
+    }
+
+    void add(long sequenceNumber, float duration, Map<String, String> attributes, String title, URI uri) {
+        if (size == durations.length) grow();
+        durations[size] = duration;
+        sequenceNumbers[size] = sequenceNumber;
+        flags[size] = nextFlags;
+        byteRangeLengths[size] = nextByteRangeLength;
+        //  Without an offset, the sub-range starts where the one of the previous segment ended
+        if (nextByteRangeLength != UNKNOWN && nextByteRangeOffset == UNKNOWN && size > 0 && byteRangeLengths[size - 1] != UNKNOWN) nextByteRangeOffset = byteRangeOffsets[size - 1] + byteRangeLengths[size - 1];
+        byteRangeOffsets[size] = nextByteRangeLength == UNKNOWN ? UNKNOWN : nextByteRangeOffset;
+        //  A discontinuity breaks the timeline, the date of the segment is then only known from a tag
+        if (nextProgramDateTime == UNKNOWN && size > 0 && programDateTimes[size - 1] != UNKNOWN && (nextFlags & DISCONTINUITY) == 0) nextProgramDateTime = programDateTimes[size - 1] + Math.round(durations[size - 1] * 1000.0);
+        programDateTimes[size] = nextProgramDateTime;
+        this.attributes[size] = attributes;
+        titles[size] = title;
+        uris[size] = uri;
+        size++;
+        nextFlags = 0;
+        nextByteRangeLength = UNKNOWN;
+        nextByteRangeOffset = UNKNOWN;
+        nextProgramDateTime = UNKNOWN;
+    }
+
+    //  Adds a segment with everything known about it, e.g. read back from a snapshot
+    void add(long sequenceNumber, float duration, Map<String, String> attributes, String title, URI uri, boolean discontinuity, boolean gap, long byteRangeLength, long byteRangeOffset, long programDateTime) {
+        if (size == durations.length) grow();
+        durations[size] = duration;
+        sequenceNumbers[size] = sequenceNumber;
+        flags[size] = (byte) ((discontinuity ? DISCONTINUITY : 0) | (gap ? GAP : 0));
+        byteRangeLengths[size] = byteRangeLength;
+        byteRangeOffsets[size] = byteRangeOffset;
+        programDateTimes[size] = programDateTime;
+        this.attributes[size] = attributes;
+        titles[size] = title;
+        uris[size] = uri;
+        size++;
+    }
+
+    //  Copies a segment of another store, with everything its tags said about it
+    void add(SegmentStore source, int index, long sequenceNumber) {
+        source.checkIndex(index);
+        if (size == durations.length) grow();
+        durations[size] = source.durations[index];
+        sequenceNumbers[size] = sequenceNumber;
+        flags[size] = source.flags[index];
+        byteRangeLengths[size] = source.byteRangeLengths[index];
+        byteRangeOffsets[size] = source.byteRangeOffsets[index];
+        programDateTimes[size] = source.programDateTimes[index];
+        attributes[size] = source.attributes[index];
+        titles[size] = source.titles[index];
+        uris[size] = source.uris[index];
+        size++;
+    }
+
+    private void grow() {
+        int capacity = durations.length * 2;
+        durations = Arrays.copyOf(durations, capacity);
+        sequenceNumbers = Arrays.copyOf(sequenceNumbers, capacity);
+        byteRangeLengths = Arrays.copyOf(byteRangeLengths, capacity);
+        byteRangeOffsets = Arrays.copyOf(byteRangeOffsets, capacity);
+        programDateTimes = Arrays.copyOf(programDateTimes, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        titles = Arrays.copyOf(titles, capacity);
+        attributes = Arrays.copyOf(attributes, capacity);
+        uris = Arrays.copyOf(uris, capacity);
+    }
+
+    @Override
+    public MediaSegment get(int index) {
+        checkIndex(index);
+        return new MediaSegment(durations[index], attributes[index], titles[index], uris[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+    }
+
+    public float duration(int index) {
+        checkIndex(index);
+        return durations[index];
+    }
+
+    public long sequenceNumber(int index) {
+        checkIndex(index);
+        return sequenceNumbers[index];
+    }
+
+    //  UNKNOWN when the segment is a whole resource
+    public long byteRangeLength(int index) {
+        checkIndex(index);
+        return byteRangeLengths[index];
+    }
+
+    public long byteRangeOffset(int index) {
+        checkIndex(index);
+        return byteRangeOffsets[index];
+    }
+
+    //  UNKNOWN when no EXT-X-PROGRAM-DATE-TIME tag applies to the segment
+    public long programDateTime(int index) {
+        checkIndex(index);
+        return programDateTimes[index];
+    }
+
+    public boolean discontinuity(int index) {
+        checkIndex(index);
+        return (flags[index] & DISCONTINUITY) != 0;
+    }
+
+    public boolean gap(int index) {
+        checkIndex(index);
+        return (flags[index] & GAP) != 0;
+    }
+
+    //  Sum of the durations of the segments from the first index, inclusive, to the second one, exclusive
+    public double duration(int from, int to) {
+        if (from < 0 || to > size || from > to) throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + size);
+        double sum = 0;
+        for (int i = from; i < to; i++) sum += durations[i];
+        return sum;
+    }
+
+    public double duration() {
+        return duration(0, size);
+    }
+
+    //  Index of the first segment, from the given one, that follows a discontinuity, -1 if there is none
+    public int nextDiscontinuity(int from) {
+        for (int i = Math.max(from, 0); i < size; i++) {
+            if ((flags[i] & DISCONTINUITY) != 0) return i;
+        }
+        return -1;
+    }
+
+    //  Index of the segment whose program date time is the latest one not after the given time, -1 if there is none
+    public int indexAtDateTime(long epochMilli) {
+        int found = -1;
+        for (int i = 0; i < size; i++) {
+            if (programDateTimes[i] != UNKNOWN && programDateTimes[i] <= epochMilli && (found == -1 || programDateTimes[i] >= programDateTimes[found])) found = i;
+        }
+        return found;
+    }
+}
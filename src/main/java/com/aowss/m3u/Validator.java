@@ -1,20 +1,18 @@
 package com.aowss.m3u;
 
+import com.aowss.m3u.Diagnostics.Rule;
+
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.Normalizer;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
-import static java.util.function.Predicate.not;
-
 public class Validator {
 
-    private static Function<AtomicLong, Function<String, Line>> addLineNumber = lineNumber -> line -> new Line(lineNumber.getAndIncrement(), line);
-
     private static Predicate<Line> uri = line -> {
         try {
             new URI(line.content());
@@ -27,27 +25,6 @@ public class Validator {
     private static Predicate<Line> emptyLine = line -> line.content().isBlank();
     public static Predicate<Line> validLine = emptyLine.or(startsWithHash).or(uri);
 
-    static UnaryOperator<Line> validLineCheck = line -> {
-        if (!validLine.test(line)) throw new RuntimeException("Line " + line.lineNumber() + " is invalid");
-        return line;
-    };
-
-    static Predicate<Line> startsWithEXTM3U = line -> line.lineNumber() != 1 ||line.content().equals("#EXTM3U");
-
-    static UnaryOperator<Line> startsEXTM3UCheck = line -> {
-        if (!startsWithEXTM3U.test(line)) throw new RuntimeException("The file must start with the EXTM3U tag");
-        return line;
-    };
-
-    static Predicate<Line> startsWithBOM = line -> line.lineNumber() == 1 && line.content().startsWith("\uFEFF");
-
-    static UnaryOperator<Line> notStartWithBOMCheck = line -> {
-        if (startsWithBOM.test(line)) throw new RuntimeException("The file starts with a BOM");
-        return line;
-    };
-
-    static Predicate<Line> commentLine = line -> line.content().charAt(0) == '#' && ( line.content().length() < 4 || !line.content().startsWith("#EXT") );
-
     static int hexValue1 = 0x0000;
     static int hexValue2 = 0x001F;
     static int crValue = 0x000D;
@@ -55,33 +32,74 @@ public class Validator {
     static int hexValue3 = 0x007F;
     static int hexValue4 = 0x009F;
 
-    static Predicate<Line> containInvalidCharacters = line -> line.content()
-            .codePoints()
-            .filter(codePoint -> ( codePoint <= hexValue2 && codePoint != crValue && codePoint != lfValue ) || ( codePoint >= hexValue3 && codePoint <= hexValue4 ))
-            .findAny()
-            .isPresent();
-
-    static UnaryOperator<Line> validCharactersCheck = line -> {
-        if (containInvalidCharacters.test(line)) throw new RuntimeException("Line " + line.lineNumber() + " contains one or more invalid characters");
-        return line;
+    //  The same test as the single scan of check()
+    static Predicate<Line> containInvalidCharacters = line -> {
+        String content = line.content();
+        for (int i = 0; i < content.length(); i++) {
+            if (invalidCharacter(content.charAt(i))) return true;
+        }
+        return false;
     };
 
-    static UnaryOperator<Line> normalizationCheck = line -> {
-        if (!Normalizer.isNormalized(line.content(), Normalizer.Form.NFC)) throw new RuntimeException("Line " + line.lineNumber() + " isn't NFC-normalized");
-        return line;
-    };
+    //  The control characters are all in the BMP, so they can be found char by char
+    private static boolean invalidCharacter(char c) {
+        return ( c >= hexValue1 && c <= hexValue2 && c != crValue && c != lfValue ) || ( c >= hexValue3 && c <= hexValue4 );
+    }
+
+    //  All the checks in a single scan of the line, in the order they are listed in https://tools.ietf.org/html/rfc8216#section-4.1
+    //  Blank and comment lines are dropped, pure ASCII lines are always NFC-normalized
+    static Line check(long lineNumber, String content) {
+        return check(lineNumber, content, Diagnostics.STRICT);
+    }
+
+    //  When the diagnostics don't throw, a line that breaks a rule is dropped, except for the first line which is still used without its BOM
+    static Line check(long lineNumber, String content, Diagnostics diagnostics) {
+        if (lineNumber == 1 && content.startsWith("\uFEFF")) {
+            diagnostics.report(lineNumber, Rule.BOM, "The file starts with a BOM");
+            content = content.substring(1);
+        }
+        if (lineNumber == 1 && !content.equals("#EXTM3U")) diagnostics.report(lineNumber, Rule.NO_EXTM3U, "The file must start with the EXTM3U tag");
+        boolean blank = true;
+        boolean ascii = true;
+        boolean invalidCharacters = false;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c >= 0x80) ascii = false;
+            if (invalidCharacter(c)) invalidCharacters = true;
+            if (blank && !Character.isWhitespace(c)) blank = false;
+        }
+        if (blank) return null;
+        URI link = null;
+        if (content.charAt(0) == '#') {
+            if (content.length() < 4 || !content.startsWith("#EXT")) return null;
+        } else {
+            try {
+                link = new URI(content);
+            } catch (URISyntaxException use) {
+                diagnostics.report(lineNumber, Rule.INVALID_LINE, "Line " + lineNumber + " is invalid");
+                return null;
+            }
+        }
+        if (invalidCharacters) {
+            diagnostics.report(lineNumber, Rule.INVALID_CHARACTERS, "Line " + lineNumber + " contains one or more invalid characters");
+            return null;
+        }
+        if (!ascii && !Normalizer.isNormalized(content, Normalizer.Form.NFC)) {
+            diagnostics.report(lineNumber, Rule.NOT_NFC_NORMALIZED, "Line " + lineNumber + " isn't NFC-normalized");
+            return null;
+        }
+        return new Line(lineNumber, content, link);
+    }
 
-    public static Function<Stream<String>, Stream<Line>> validate = lines -> {
+    //  Lines are no longer read once the limit of the diagnostics is reached
+    public static Function<Diagnostics, Function<Stream<String>, Stream<Line>>> validateWith = diagnostics -> lines -> {
         var lineNumber = new AtomicLong(1);
-        return lines
-                .map(addLineNumber.apply(lineNumber))
-                .map(notStartWithBOMCheck)
-                .map(startsEXTM3UCheck)
-                .map(validLineCheck)
-                .filter(not(emptyLine))
-                .filter(not(commentLine))
-                .map(validCharactersCheck)
-                .map(normalizationCheck);
+        return (diagnostics.strict() ? lines : lines.takeWhile(content -> !diagnostics.limitReached())).mapMulti((String content, Consumer<Line> valid) -> {
+            Line line = check(lineNumber.getAndIncrement(), content, diagnostics);
+            if (line != null) valid.accept(line);
+        });
     };
 
+    public static Function<Stream<String>, Stream<Line>> validate = validateWith.apply(Diagnostics.STRICT);
+
 }
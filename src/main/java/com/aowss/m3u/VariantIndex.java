@@ -0,0 +1,144 @@
+package com.aowss.m3u;
+
+import java.util.*;
+
+//  Built once per master playlist, then shared by the threads selecting a variant : lookups neither lock nor allocate
+//  Variants are grouped by codecs and video range, a missing VIDEO-RANGE being SDR ( https://tools.ietf.org/html/rfc8216#section-4.3.4.2 )
+public class VariantIndex {
+
+    //  Variants by increasing bandwidth, the highest resolution last when the bandwidths are equal
+    public static class Group {
+
+        private final String codecs;
+        private final String videoRange;
+        private final long[] bandwidths;
+        private final VariantStream[] variants;
+
+        private Group(String codecs, String videoRange, List<VariantStream> variants) {
+            this.codecs = codecs;
+            this.videoRange = videoRange;
+            this.variants = variants.toArray(new VariantStream[0]);
+            Arrays.sort(this.variants, Comparator.comparingLong(VariantStream::bandwidth).thenComparingLong(VariantIndex::pixels));
+            this.bandwidths = new long[this.variants.length];
+            for (int i = 0; i < this.variants.length; i++) bandwidths[i] = this.variants[i].bandwidth();
+        }
+
+        public String codecs() {
+            return codecs;
+        }
+
+        public String videoRange() {
+            return videoRange;
+        }
+
+        public List<VariantStream> variants() {
+            return Collections.unmodifiableList(Arrays.asList(variants));
+        }
+
+        //  The variant with the highest bandwidth that doesn't exceed the given one, null when they all exceed it
+        public VariantStream bestUnder(long bitsPerSecond) {
+            int low = 0, high = bandwidths.length - 1, best = -1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (bandwidths[middle] <= bitsPerSecond) {
+                    best = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return best == -1 ? null : variants[best];
+        }
+
+        public VariantStream lowest() {
+            return variants.length == 0 ? null : variants[0];
+        }
+    }
+
+    private final Group all;
+    private final Map<String, Map<String, Group>> groups;
+    private final Map<String, List<Rendition>> audio;
+    private final Map<String, List<Rendition>> video;
+    private final Map<String, List<Rendition>> subtitles;
+    private final Map<String, List<Rendition>> closedCaptions;
+
+    public VariantIndex(MasterPlaylist playlist) {
+        all = new Group(null, null, playlist.variants());
+        Map<String, Map<String, List<VariantStream>>> byCodecs = new LinkedHashMap<>();
+        for (VariantStream variant : playlist.variants()) {
+            byCodecs.computeIfAbsent(variant.codecs(), codecs -> new LinkedHashMap<>()).computeIfAbsent(videoRange(variant.videoRange()), range -> new ArrayList<>()).add(variant);
+        }
+        Map<String, Map<String, Group>> groups = new LinkedHashMap<>();
+        byCodecs.forEach((codecs, ranges) -> {
+            Map<String, Group> byRange = new LinkedHashMap<>();
+            ranges.forEach((range, variants) -> byRange.put(range, new Group(codecs, range, variants)));
+            groups.put(codecs, Collections.unmodifiableMap(byRange));
+        });
+        this.groups = Collections.unmodifiableMap(groups);
+        audio = renditions(playlist, "AUDIO");
+        video = renditions(playlist, "VIDEO");
+        subtitles = renditions(playlist, "SUBTITLES");
+        closedCaptions = renditions(playlist, "CLOSED-CAPTIONS");
+    }
+
+    private static Map<String, List<Rendition>> renditions(MasterPlaylist playlist, String type) {
+        Map<String, List<Rendition>> groups = new HashMap<>();
+        for (Rendition rendition : playlist.renditions()) {
+            if (rendition.type().equals(type)) groups.computeIfAbsent(rendition.groupId(), groupId -> new ArrayList<>()).add(rendition);
+        }
+        groups.replaceAll((groupId, renditions) -> List.copyOf(renditions));
+        return groups;
+    }
+
+    private static String videoRange(String videoRange) {
+        return videoRange == null ? "SDR" : videoRange;
+    }
+
+    private static long pixels(VariantStream variant) {
+        return variant.resolution() == null ? 0 : (long) variant.resolution().width() * variant.resolution().height();
+    }
+
+    //  Whatever their codecs and video range
+    public Group all() {
+        return all;
+    }
+
+    public VariantStream bestUnder(long bitsPerSecond) {
+        return all.bestUnder(bitsPerSecond);
+    }
+
+    //  null when no variant has these codecs and video range
+    public Group group(String codecs, String videoRange) {
+        Map<String, Group> byRange = groups.get(codecs);
+        return byRange == null ? null : byRange.get(videoRange(videoRange));
+    }
+
+    public Collection<Group> groups() {
+        List<Group> list = new ArrayList<>();
+        groups.values().forEach(byRange -> list.addAll(byRange.values()));
+        return Collections.unmodifiableList(list);
+    }
+
+    //  The renditions of the group the variant refers to, none when it doesn't refer to a group defined by the playlist
+    public List<Rendition> audio(VariantStream variant) {
+        return resolve(audio, variant.audio());
+    }
+
+    public List<Rendition> video(VariantStream variant) {
+        return resolve(video, variant.video());
+    }
+
+    public List<Rendition> subtitles(VariantStream variant) {
+        return resolve(subtitles, variant.subtitles());
+    }
+
+    public List<Rendition> closedCaptions(VariantStream variant) {
+        return resolve(closedCaptions, variant.closedCaptions());
+    }
+
+    private static List<Rendition> resolve(Map<String, List<Rendition>> groups, String groupId) {
+        if (groupId == null) return List.of();
+        return groups.getOrDefault(groupId, List.of());
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.aowss.m3u;
+
+import java.net.URI;
+
+import static com.aowss.m3u.CharSequences.startsWith;
+
+public record VariantStream(long bandwidth, long averageBandwidth, String codecs, Resolution resolution, double frameRate, String videoRange,
+                            String audio, String video, String subtitles, String closedCaptions, URI uri) {
+
+    static VariantStream parse(Line streamInfTag, Line uri) {
+        if (streamInfTag == null || uri == null || streamInfTag.content().isBlank() || uri.content().isBlank()) throw new RuntimeException("A variant stream must have an EXT-X-STREAM-INF tag and a URI");
+        return parse(streamInfTag.lineNumber(), streamInfTag.content(), new AttributeList(), URI.create(uri.content()));
+    }
+
+    static VariantStream parse(long lineNumber, CharSequence tag, AttributeList attributes, URI uri) {
+        if (!startsWith(tag, "#EXT-X-STREAM-INF:")) throw new RuntimeException("A variant stream must start with an EXT-X-STREAM-INF tag");
+        attributes.parse(tag, 18, tag.length());
+        if (!attributes.has("BANDWIDTH")) throw new RuntimeException("Line " + lineNumber + " : the EXT-X-STREAM-INF tag must have a BANDWIDTH attribute");
+        return new VariantStream(
+                attributes.getInt("BANDWIDTH", 0),
+                attributes.getInt("AVERAGE-BANDWIDTH", 0),
+                attributes.getQuotedString("CODECS"),
+                attributes.getResolution("RESOLUTION"),
+                attributes.getDecimal("FRAME-RATE", 0),
+                attributes.getEnumeratedString("VIDEO-RANGE"),
+                attributes.getQuotedString("AUDIO"),
+                attributes.getQuotedString("VIDEO"),
+                attributes.getQuotedString("SUBTITLES"),
+                attributes.is("CLOSED-CAPTIONS", "NONE") ? "NONE" : attributes.getQuotedString("CLOSED-CAPTIONS"),
+                uri
+        );
+    }
+
+    VariantStream withURI(URI uri) {
+        return new VariantStream(bandwidth, averageBandwidth, codecs, resolution, frameRate, videoRange, audio, video, subtitles, closedCaptions, uri);
+    }
+}
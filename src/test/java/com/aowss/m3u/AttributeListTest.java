@@ -0,0 +1,92 @@
+package com.aowss.m3u;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Attribute lists from https://tools.ietf.org/html/rfc8216#section-4.2")
+public class AttributeListTest {
+
+    static String streamInf = "BANDWIDTH=1280000,CODECS=\"avc1.4d401f,mp4a.40.2\",RESOLUTION=640x360,FRAME-RATE=29.970,VIDEO-RANGE=SDR,CLOSED-CAPTIONS=NONE";
+
+    @Test
+    @Tag("Attributes")
+    @DisplayName("Attribute values are converted according to their type")
+    public void typedValues() {
+        var attributes = new AttributeList().parse(streamInf, 0, streamInf.length());
+        assertThat(attributes.size(), is(6));
+        assertThat(attributes.getInt("BANDWIDTH", 0), is(1280000L));
+        assertThat(attributes.getQuotedString("CODECS"), is("avc1.4d401f,mp4a.40.2"));
+        assertThat(attributes.getResolution("RESOLUTION"), is(new Resolution(640, 360)));
+        assertThat(attributes.getDecimal("FRAME-RATE", 0), is(29.97));
+        assertThat(attributes.getEnumeratedString("VIDEO-RANGE"), is("SDR"));
+        assertThat(attributes.is("CLOSED-CAPTIONS", "NONE"), is(true));
+        assertThat(attributes.getInt("AVERAGE-BANDWIDTH", -1), is(-1L));
+        assertThat(attributes.getQuotedString("AUDIO"), is(nullValue()));
+    }
+
+    @Test
+    @Tag("Attributes")
+    @DisplayName("The same instance can be reused for another attribute list")
+    public void reuse() {
+        var attributes = new AttributeList();
+        attributes.parse(streamInf, 0, streamInf.length());
+        var tag = "#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"aac\",NAME=\"English\"";
+        attributes.parse(tag, 13, tag.length());
+        assertThat(attributes.size(), is(3));
+        assertThat(attributes.has("BANDWIDTH"), is(false));
+        assertThat(attributes.name(2), is("NAME"));
+        assertThat(attributes.value(2), is("\"English\""));
+    }
+
+    @Test
+    @Tag("Attributes")
+    @DisplayName("An AttributeName is an unquoted string containing characters from the set [A..Z], [0..9] and '-'")
+    public void attributeName() {
+        var content = "bandwidth=1";
+        Throwable exception = assertThrows(RuntimeException.class, () -> new AttributeList().parse(content, 0, content.length()));
+        assertThat(exception.getMessage(), is("An attribute name can only contain the following characters: [A..Z], [0..9] and '-'"));
+    }
+
+    @Test
+    @Tag("Attributes")
+    @DisplayName("An attribute/value pair is separated by '='")
+    public void separator() {
+        var content = "BANDWIDTH";
+        Throwable exception = assertThrows(RuntimeException.class, () -> new AttributeList().parse(content, 0, content.length()));
+        assertThat(exception.getMessage(), is("An attribute should have a name and a value separated by '='"));
+    }
+
+    @Test
+    @Tag("Attributes")
+    @DisplayName("The attributes parser splits on the separator")
+    public void attributesParser() {
+        assertThat(PlaylistParser.attributesParser.apply(",").apply("A=1,B-2=two,"), is(Map.of("A", "1", "B-2", "two")));
+        Throwable exception = assertThrows(RuntimeException.class, () -> PlaylistParser.attributesParser.apply(",").apply("A=1,B=2=3"));
+        assertThat(exception.getMessage(), is("An attribute should have a name and a value separated by '='"));
+    }
+
+    @Test
+    @Tag("Attributes")
+    @DisplayName("The attributes parser keeps the semantics of String.split : a regular expression separator, trailing separators and '=' ignored")
+    public void attributesParserContract() {
+        assertThat(PlaylistParser.attributesParser.apply("\\s*;\\s*").apply("A=1 ;  B=2"), is(Map.of("A", "1", "B", "2")));
+        assertThat(PlaylistParser.attributesParser.apply("\\|").apply("A=1|B=2"), is(Map.of("A", "1", "B", "2")));
+        assertThat(PlaylistParser.attributesParser.apply(",").apply("A=1,,,"), is(Map.of("A", "1")));
+        assertThat(PlaylistParser.attributesParser.apply(",").apply("A=1=="), is(Map.of("A", "1")));
+        for (String invalid : new String[] { "", ",A=1", "A=1,,B=2", "A=", "A==1" }) {
+            Throwable exception = assertThrows(RuntimeException.class, () -> PlaylistParser.attributesParser.apply(",").apply(invalid));
+            assertThat(invalid, exception.getMessage(), is("An attribute should have a name and a value separated by '='"));
+        }
+        Throwable exception = assertThrows(IllegalStateException.class, () -> PlaylistParser.attributesParser.apply(",").apply("A=1,A=2"));
+        assertThat(exception.getMessage(), is("Duplicate key A (attempted merging values 1 and 2)"));
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.aowss.m3u;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@DisplayName("Sharing the values repeated across segments")
+public class DeduplicatorTest {
+
+    static String iptv                          = "tv_channels_UBPMPAN7T_plus.m3u";
+
+    @Test
+    @Tag("Deduplication")
+    @DisplayName("A deduplicated playlist is the same as a playlist parsed without deduplication")
+    public void samePlaylist() throws URISyntaxException {
+        Path path = Paths.get(getClass().getClassLoader().getResource(iptv).toURI());
+        var playlist = PlaylistReader.fromFile.apply(path);
+        var deduplicated = PlaylistReader.fromMappedFileWith.apply(PlaylistLoader.builder().deduplicate(new Deduplicator(10_000)).build()::parse).apply(path);
+        assertThat(deduplicated, is(playlist));
+    }
+
+    @Test
+    @Tag("Deduplication")
+    @DisplayName("Segments with the same attribute values share them")
+    public void sharedValues() throws URISyntaxException {
+        Path path = Paths.get(getClass().getClassLoader().getResource(iptv).toURI());
+        var playlist = (MediaPlaylist) PlaylistReader.fromMappedFileWith.apply(PlaylistLoader.builder().deduplicate(new Deduplicator(10_000)).build()::parse).apply(path);
+        Set<String> groups = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (MediaSegment segment : playlist.segments()) groups.add(segment.attributes().get("group-title"));
+        assertThat(groups.size(), is((int) playlist.segments().stream().map(segment -> segment.attributes().get("group-title")).distinct().count()));
+        assertThat(groups.size(), lessThan(playlist.segments().size() / 10));
+    }
+
+    @Test
+    @Tag("Deduplication")
+    @DisplayName("The number of values kept is bounded")
+    public void bounded() throws URISyntaxException {
+        Path path = Paths.get(getClass().getClassLoader().getResource(iptv).toURI());
+        var deduplicator = new Deduplicator(10);
+        PlaylistReader.fromMappedFileWith.apply(PlaylistLoader.builder().deduplicate(deduplicator).build()::parse).apply(path);
+        assertThat(deduplicator.size(), lessThanOrEqualTo(30));
+    }
+
+    @Test
+    @Tag("Deduplication")
+    @DisplayName("Equal values are shared as long as they are written the same way")
+    public void canonicalValues() {
+        var deduplicator = new Deduplicator(10);
+        var title = deduplicator.string(new String("ABC HD"));
+        assertThat(deduplicator.string(new String("ABC HD")), sameInstance(title));
+        var attributes = deduplicator.attributes(Map.of("group-title", new String("News")));
+        assertThat(deduplicator.attributes(Map.of("group-title", "News")), sameInstance(attributes));
+        var uri = deduplicator.uri(URI.create("http://example.com/%2a.ts"));
+        assertThat(deduplicator.uri(URI.create("http://example.com/%2a.ts")), sameInstance(uri));
+        assertThat(deduplicator.uri(URI.create("http://example.com/%2A.ts")).toString(), is("http://example.com/%2A.ts"));
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.aowss.m3u;
+
+import com.aowss.m3u.Diagnostics.Rule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Collecting the rules broken by a playlist instead of failing on the first one")
+public class DiagnosticsTest {
+
+    static String broken = """
+            #EXTM3U
+            #EXT-X-TARGETDURATION:ten
+            #EXTINF:9.009,first
+            http://media.example.com/first.ts
+            #EXTINF:9.009,second
+            #EXTINF:abc,
+            http://media.example.com/second.ts
+            #EXTINF:3.003,third
+            http://media.example.com/ third.ts
+            http://media.example.com/third.ts
+            #EXT-X-ENDLIST
+            """;
+
+    static List<Rule> rules(Diagnostics diagnostics) {
+        return diagnostics.list().stream().map(Diagnostics.Diagnostic::rule).toList();
+    }
+
+    static List<Long> lineNumbers(Diagnostics diagnostics) {
+        return diagnostics.list().stream().map(Diagnostics.Diagnostic::lineNumber).toList();
+    }
+
+    @Test
+    @Tag("Diagnostics")
+    @DisplayName("Lines that break a rule are reported and skipped")
+    public void collect() {
+        var diagnostics = new Diagnostics(100);
+        var playlist = (MediaPlaylist) PlaylistParser.parseLeniently.apply(diagnostics).apply(broken.lines());
+        assertThat(rules(diagnostics), is(List.of(Rule.INVALID_DECIMAL_INTEGER, Rule.MISSING_URI, Rule.MALFORMED_TAG, Rule.URI_WITHOUT_TAG, Rule.INVALID_LINE)));
+        assertThat(lineNumbers(diagnostics), is(List.of(2L, 6L, 6L, 7L, 9L)));
+        assertThat(diagnostics.list().get(1).message(), is("Line 6 : the tag on line 5 must be followed by a URI"));
+        assertThat(diagnostics.list().get(4).section(), is("4.1"));
+        assertThat(diagnostics.limitReached(), is(false));
+        assertThat(playlist.segments().stream().map(MediaSegment::title).toList(), is(List.of("first", "third")));
+        assertThat(playlist.endList(), is(true));
+    }
+
+    @Test
+    @Tag("Diagnostics")
+    @DisplayName("Reading the bytes of a playlist reports the same diagnostics as reading its lines")
+    public void sameDiagnostics() {
+        var diagnostics = new Diagnostics(100);
+        var playlist = PlaylistParser.parseLeniently.apply(diagnostics).apply(broken.lines());
+        var loader = PlaylistLoader.builder().lenient(100).build();
+        var bufferPlaylist = loader.parse(ByteBuffer.wrap(broken.getBytes(UTF_8)));
+        assertThat(bufferPlaylist, is(playlist));
+        assertThat(loader.diagnostics(), is(diagnostics.list()));
+    }
+
+    @Test
+    @Tag("Diagnostics")
+    @DisplayName("Parsing stops once the limit is reached")
+    public void limit() {
+        var diagnostics = new Diagnostics(2);
+        var playlist = (MediaPlaylist) PlaylistParser.parseLeniently.apply(diagnostics).apply(broken.lines());
+        assertThat(rules(diagnostics), is(List.of(Rule.INVALID_DECIMAL_INTEGER, Rule.MISSING_URI)));
+        assertThat(diagnostics.limitReached(), is(true));
+        assertThat(playlist.segments().size(), is(1));
+        assertThat(playlist.endList(), is(false));
+        var loader = PlaylistLoader.builder().lenient(2).build();
+        var bufferPlaylist = loader.parse(ByteBuffer.wrap(broken.getBytes(UTF_8)));
+        assertThat(bufferPlaylist, is(playlist));
+        assertThat(loader.diagnostics(), is(diagnostics.list()));
+    }
+
+    @Test
+    @Tag("Diagnostics")
+    @DisplayName("A BOM is reported and the playlist is read without it")
+    public void bom() throws URISyntaxException, IOException {
+        Path path = Paths.get(getClass().getClassLoader().getResource("utf8-with-bom.m3u").toURI());
+        var loader = PlaylistLoader.builder().lenient(10).build();
+        var playlist = (MediaPlaylist) loader.parse(ByteBuffer.wrap(Files.readAllBytes(path)));
+        assertThat(loader.diagnostics().stream().map(Diagnostics.Diagnostic::rule).toList(), is(List.of(Rule.BOM)));
+        assertThat(playlist.targetDuration(), is(10L));
+    }
+
+    @Test
+    @Tag("Diagnostics")
+    @DisplayName("A decimal-integer that the lenient parser reports is rejected by the strict one")
+    public void decimalInteger() {
+        for (String value : List.of("-3", "+7", " 7", "", "99999999999999999999")) {
+            List<String> lines = List.of("#EXTM3U", "#EXT-X-TARGETDURATION:" + value, "#EXTINF:9.009,", "first.ts");
+            Throwable exception = assertThrows(RuntimeException.class, () -> PlaylistParser.parse.apply(lines.stream()));
+            assertThat(value, exception.getMessage(), is("Line 2 : the tag value must be a decimal-integer"));
+            var diagnostics = new Diagnostics(10);
+            var playlist = (MediaPlaylist) PlaylistParser.parseLeniently.apply(diagnostics).apply(lines.stream());
+            assertThat(value, rules(diagnostics), is(List.of(Rule.INVALID_DECIMAL_INTEGER)));
+            assertThat(playlist.targetDuration(), is(0L));
+        }
+        assertThat(((MediaPlaylist) PlaylistParser.parse.apply(Stream.of("#EXTM3U", "#EXT-X-MEDIA-SEQUENCE:1234567890123456789", "#EXTINF:9.009,", "first.ts"))).mediaSequence(), is(1234567890123456789L));
+    }
+
+    @Test
+    @Tag("Diagnostics")
+    @DisplayName("The strict diagnostics throw on the first rule broken and never record it")
+    public void strict() {
+        Throwable exception = assertThrows(RuntimeException.class, () -> Diagnostics.STRICT.report(2, Rule.MISSING_URI, "Line 2 : missing URI"));
+        assertThat(exception.getMessage(), is("Line 2 : missing URI"));
+        Diagnostics.STRICT.clear();
+        assertThat(Diagnostics.STRICT.list(), is(List.of()));
+        assertThat(Diagnostics.STRICT.limitReached(), is(false));
+        assertThat(PlaylistLoader.builder().build().diagnostics(), is(List.of()));
+    }
+
+}
@@ -0,0 +1,177 @@
+package com.aowss.m3u;
+
+import com.aowss.m3u.Diagnostics.Rule;
+import com.aowss.m3u.PlaylistMetrics.Stage;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Metrics and JFR events recorded while playlists are loaded")
+public class InstrumentationTest {
+
+    static String sample                        = "sample.m3u";
+    static String master                        = "master.m3u8";
+
+    private static WireMockServer wireMockServer;
+
+    @BeforeAll
+    static void setUpWireMock() {
+        wireMockServer = new WireMockServer(8096);
+        wireMockServer.start();
+    }
+
+    @AfterAll
+    static void tearDownWireMock() {
+        wireMockServer.stop();
+    }
+
+    @AfterEach
+    public void uninstall() {
+        Instrumentation.install(null);
+    }
+
+    private Path path(String resource) throws Exception {
+        return Paths.get(getClass().getClassLoader().getResource(resource).toURI());
+    }
+
+    @Test
+    @Tag("Media")
+    @DisplayName("Every stage of a file load is timed and its content counted")
+    public void stages() throws Exception {
+        var recorder = new MetricsRecorder();
+        Instrumentation.install(recorder);
+        PlaylistReader.fromFile.apply(path(sample));
+        PlaylistReader.fromMappedFile.apply(path(master));
+        var statistics = recorder.statistics();
+        assertThat(statistics.stages().get(Stage.LOAD).count(), is(2L));
+        assertThat(statistics.stages().get(Stage.VALIDATE).count(), is(2L));
+        assertThat(statistics.stages().get(Stage.PARSE).count(), is(2L));
+        assertThat(statistics.stages().get(Stage.DOWNLOAD).count(), is(0L));
+        assertThat(statistics.bytes(), is(Files.size(path(sample)) + Files.size(path(master))));
+        assertThat(statistics.segments(), is(3L + 4L));
+        assertThat(statistics.lines(), greaterThanOrEqualTo(10L));
+        assertThat(statistics.rejected().isEmpty(), is(true));
+        var load = statistics.stages().get(Stage.LOAD);
+        assertThat(load.percentile(100), greaterThanOrEqualTo(load.mean()));
+    }
+
+    @Test
+    @Tag("URL")
+    @DisplayName("A download is timed until the last byte of the body, whichever way the playlist is read")
+    public void download() throws Exception {
+        wireMockServer.stubFor(get(urlEqualTo("/slow/sample.m3u")).willReturn(aResponse().withStatus(200).withBody(PlaylistReaderTest.readFileContent(sample)).withChunkedDribbleDelay(5, 500)));
+        URI uri = URI.create("http://localhost:8096/slow/sample.m3u");
+        List<Runnable> reads = List.of(() -> PlaylistReader.fromURI.apply(uri), () -> PlaylistReader.fromURIWithLimits.apply(Limits.NONE).apply(uri), () -> PlaylistLoader.builder().build().read(uri));
+        for (Runnable read : reads) {
+            var recorder = new MetricsRecorder();
+            Instrumentation.install(recorder);
+            read.run();
+            var statistics = recorder.statistics();
+            assertThat(statistics.stages().get(Stage.DOWNLOAD).count(), is(1L));
+            assertThat(statistics.stages().get(Stage.DOWNLOAD).total(), greaterThanOrEqualTo(300_000_000L));
+            assertThat(statistics.stages().get(Stage.LOAD).count(), is(1L));
+            assertThat(statistics.stages().get(Stage.LOAD).total(), greaterThanOrEqualTo(statistics.stages().get(Stage.DOWNLOAD).total()));
+            assertThat(statistics.segments(), is(3L));
+            assertThat(statistics.lines(), greaterThanOrEqualTo(10L));
+        }
+    }
+
+    @Test
+    @Tag("Media")
+    @DisplayName("A loader records the same metrics and JFR events as the reader")
+    public void loader(@TempDir Path directory) throws Exception {
+        var recorder = new MetricsRecorder();
+        Instrumentation.install(recorder);
+        Path dump = directory.resolve("load.jfr");
+        try (var recording = new Recording()) {
+            recording.enable("com.aowss.m3u.PlaylistLoad");
+            recording.start();
+            PlaylistLoader.builder().build().read(path(sample));
+            recording.stop();
+            recording.dump(dump);
+        }
+        var statistics = recorder.statistics();
+        assertThat(statistics.stages().get(Stage.LOAD).count(), is(1L));
+        assertThat(statistics.stages().get(Stage.DOWNLOAD).count(), is(0L));
+        assertThat(statistics.bytes(), is(Files.size(path(sample))));
+        assertThat(statistics.segments(), is(3L));
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream().filter(event -> event.getEventType().getName().equals("com.aowss.m3u.PlaylistLoad")).toList();
+        assertThat(events.size(), is(1));
+        assertThat(events.get(0).getString("source"), endsWith(sample));
+        assertThat(events.get(0).getLong("lines"), is(10L));
+    }
+
+    @Test
+    @Tag("Media")
+    @DisplayName("Rejected lines are counted per rule, whether they throw or are collected")
+    public void rejected() {
+        var recorder = new MetricsRecorder();
+        Instrumentation.install(recorder);
+        assertThrows(RuntimeException.class, () -> PlaylistParser.parse.apply(Stream.of("#EXTM3U", "http://media.example.com/first.ts")));
+        PlaylistParser.parseLeniently.apply(new Diagnostics(10)).apply(Stream.of("#EXTM3U", "#EXTINF:abc,", "first.ts", "#EXTINF:10,", "#EXTINF:10,", "second.ts"));
+        var rejected = recorder.statistics().rejected();
+        assertThat(rejected.get(Rule.URI_WITHOUT_TAG), is(2L));
+        assertThat(rejected.get(Rule.MALFORMED_TAG), is(1L));
+        assertThat(rejected.get(Rule.MISSING_URI), is(1L));
+    }
+
+    @Test
+    @Tag("Media")
+    @DisplayName("Nothing is recorded once the metrics are uninstalled")
+    public void uninstalled() throws Exception {
+        var recorder = new MetricsRecorder();
+        Instrumentation.install(recorder);
+        Instrumentation.install(null);
+        PlaylistReader.fromFile.apply(path(sample));
+        assertThat(recorder.statistics().stages().get(Stage.LOAD).count(), is(0L));
+        assertThat(recorder.statistics().lines(), is(0L));
+    }
+
+    @Test
+    @Tag("Media")
+    @DisplayName("Each load is a JFR event when the recording enables it")
+    public void jfr(@TempDir Path directory) throws Exception {
+        Path dump = directory.resolve("load.jfr");
+        try (var recording = new Recording()) {
+            recording.enable("com.aowss.m3u.PlaylistLoad");
+            recording.start();
+            PlaylistReader.fromFile.apply(path(sample));
+            recording.stop();
+            recording.dump(dump);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream().filter(event -> event.getEventType().getName().equals("com.aowss.m3u.PlaylistLoad")).toList();
+        assertThat(events.size(), is(1));
+        assertThat(events.get(0).getString("source"), endsWith(sample));
+        assertThat(events.get(0).getLong("bytes"), is(Files.size(path(sample))));
+        assertThat(events.get(0).getLong("lines"), is(10L));
+        assertThat(events.get(0).getLong("segments"), is(3L));
+    }
+
+    @Test
+    @DisplayName("A percentile is between 0 and 100")
+    public void percentile() {
+        assertThrows(RuntimeException.class, () -> new MetricsRecorder().statistics().stages().get(Stage.LOAD).percentile(101));
+    }
+
+}
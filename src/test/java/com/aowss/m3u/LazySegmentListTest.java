@@ -0,0 +1,65 @@
+package com.aowss.m3u;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Function;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Lazily parsed media segments")
+public class LazySegmentListTest {
+
+    static String[] validPlaylists              = { "sample.m3u", "live.m3u8", "master.m3u8", "with-blank-lines.m3u", "with-comment-lines.m3u", "tv_channels_UBPMPAN7T_plus.m3u", "vget-1.m3u" };
+    static String[] invalidPlaylists            = { "utf8-with-bom.m3u", "control-character.m3u", "not-nfc-normalized.m3u", "no-extm3u.m3u" };
+
+    static Function<Path, Playlist> fromMappedFileLazily = PlaylistReader.fromMappedFileWith.apply(PlaylistLoader.builder().lazy(true).build()::parse);
+
+    @Test
+    @Tag("Lazy")
+    @DisplayName("A lazily parsed playlist is the same as an eagerly parsed one")
+    public void samePlaylist() throws URISyntaxException {
+        for (String resource : validPlaylists) {
+            Path path = Paths.get(getClass().getClassLoader().getResource(resource).toURI());
+            assertThat(resource, fromMappedFileLazily.apply(path), is(PlaylistReader.fromMappedFile.apply(path)));
+        }
+    }
+
+    @Test
+    @Tag("Lazy")
+    @DisplayName("A lazily parsed playlist reports the same errors as an eagerly parsed one")
+    public void sameErrors() throws URISyntaxException {
+        for (String resource : invalidPlaylists) {
+            Path path = Paths.get(getClass().getClassLoader().getResource(resource).toURI());
+            Throwable expected = assertThrows(RuntimeException.class, () -> PlaylistReader.fromMappedFile.apply(path));
+            Throwable exception = assertThrows(RuntimeException.class, () -> fromMappedFileLazily.apply(path));
+            assertThat(resource, exception.getMessage(), is(expected.getMessage()));
+        }
+    }
+
+    @Test
+    @Tag("Lazy")
+    @DisplayName("The segment playing at a given time is found from the durations of the segments")
+    public void indexAt() throws URISyntaxException {
+        Path path = Paths.get(getClass().getClassLoader().getResource("sample.m3u").toURI());
+        var segments = ((MediaPlaylist) fromMappedFileLazily.apply(path)).segments();
+        assertThat(segments, instanceOf(LazySegmentList.class));
+        var lazySegments = (LazySegmentList) segments;
+        assertThat(lazySegments.duration(), closeTo(21.021, 0.0001));
+        assertThat(lazySegments.startTime(2), closeTo(18.018, 0.0001));
+        assertThat(lazySegments.indexAt(0), is(0));
+        assertThat(lazySegments.indexAt(9.5), is(1));
+        assertThat(lazySegments.indexAt(20), is(2));
+        assertThat(lazySegments.indexAt(-1), is(-1));
+        assertThat(lazySegments.indexAt(22), is(-1));
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.aowss.m3u;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import static com.aowss.m3u.PlaylistReaderTest.readFileContent;
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Hard limits for playlists from untrusted origins")
+public class LimitsTest {
+
+    private static WireMockServer wireMockServer;
+
+    static String iptv                          = "tv_channels_UBPMPAN7T_plus.m3u";
+
+    @BeforeAll
+    static void setUpWireMock() {
+        wireMockServer = new WireMockServer(8094);
+        wireMockServer.start();
+    }
+
+    @AfterAll
+    static void tearDownWireMock() {
+        wireMockServer.stop();
+    }
+
+    private Path path(String resource) throws URISyntaxException {
+        return Paths.get(getClass().getClassLoader().getResource(resource).toURI());
+    }
+
+    @Test
+    @Tag("URL")
+    @DisplayName("A body larger than the limit is rejected from its Content-Length")
+    public void contentLength() throws IOException {
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/large.m3u")).willReturn(aResponse().withStatus(200).withBody(readFileContent(iptv))));
+        var limits = Limits.NONE.withMaxBytes(10_000);
+        Throwable exception = assertThrows(RuntimeException.class, () -> PlaylistReader.fromURIWithLimits.apply(limits).apply(URI.create("http://localhost:8094/playlist/large.m3u")));
+        assertThat(exception.getMessage(), is("The playlist exceeds the limit of 10000 bytes"));
+        assertThat(PlaylistReader.fromURIWithLimits.apply(Limits.NONE).apply(URI.create("http://localhost:8094/playlist/large.m3u")), is(PlaylistReader.fromFile.apply(Paths.get("src/test/resources/" + iptv))));
+    }
+
+    @Test
+    @Tag("URL")
+    @DisplayName("A streamed body stops being downloaded once it exceeds the limit")
+    public void streamed() throws IOException {
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/streamed.m3u")).willReturn(aResponse().withStatus(200).withBody(readFileContent(iptv)).withChunkedDribbleDelay(50, 5000)));
+        var limits = Limits.NONE.withMaxBytes(20_000);
+        long start = System.nanoTime();
+        Throwable exception = assertThrows(RuntimeException.class, () -> PlaylistReader.fromURIWithLimits.apply(limits).apply(URI.create("http://localhost:8094/playlist/streamed.m3u")));
+        assertThat(exception.getMessage(), is("The playlist exceeds the limit of 20000 bytes"));
+        assertThat(Duration.ofNanos(System.nanoTime() - start).toMillis(), lessThan(2500L));
+    }
+
+    @Test
+    @Tag("URL")
+    @DisplayName("A download that doesn't complete before the deadline is cancelled")
+    public void deadline() throws IOException {
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/slow.m3u")).willReturn(aResponse().withStatus(200).withBody(readFileContent("sample.m3u")).withFixedDelay(3000)));
+        var limits = Limits.NONE.withDeadline(Duration.ofMillis(200));
+        long start = System.nanoTime();
+        Throwable exception = assertThrows(RuntimeException.class, () -> PlaylistReader.fromURIWithLimits.apply(limits).apply(URI.create("http://localhost:8094/playlist/slow.m3u")));
+        assertThat(exception.getMessage(), is("The playlist located at http://localhost:8094/playlist/slow.m3u wasn't read within its deadline of 200ms"));
+        assertThat(Duration.ofNanos(System.nanoTime() - start).toMillis(), lessThan(2000L));
+    }
+
+    @Test
+    @Tag("URL")
+    @DisplayName("A line longer than the limit is rejected before it is complete")
+    public void lineLength() {
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/long-line.m3u")).willReturn(aResponse().withStatus(200).withBody("#EXTM3U\n#EXTINF:10," + "x".repeat(100_000) + "\nfirst.ts\n")));
+        var limits = Limits.NONE.withMaxLineLength(1024);
+        Throwable exception = assertThrows(RuntimeException.class, () -> PlaylistReader.fromURIWithLimits.apply(limits).apply(URI.create("http://localhost:8094/playlist/long-line.m3u")));
+        assertThat(exception.getMessage(), is("Line 2 exceeds the limit of 1024 bytes"));
+    }
+
+    @Test
+    @Tag("Loader")
+    @DisplayName("Segments and attributes beyond the limits are rejected, whatever the strictness and whether the segments are parsed lazily")
+    public void segmentsAndAttributes() throws URISyntaxException {
+        var loader = PlaylistLoader.builder().lenient(100).limits(Limits.NONE.withMaxSegments(100)).build();
+        Throwable exception = assertThrows(RuntimeException.class, () -> loader.read(path(iptv)));
+        assertThat(exception.getMessage(), is("Line 203 : the playlist exceeds the limit of 100 segments"));
+        assertThat(((MediaPlaylist) loader.read(path("sample.m3u"))).segments().size(), is(3));
+
+        for (boolean lazy : new boolean[] { false, true }) {
+            var attributes = PlaylistLoader.builder().lazy(lazy).limits(Limits.NONE.withMaxAttributes(2)).build();
+            exception = assertThrows(RuntimeException.class, () -> attributes.parse(ByteBuffer.wrap("#EXTM3U\n#EXTINF:10 a=\"1\" b=\"2\" c=\"3\",title\nfirst.ts\n".getBytes(UTF_8))));
+            assertThat(exception.getMessage(), is("Line 2 : the tag exceeds the limit of 2 attributes"));
+            var playlist = (MediaPlaylist) attributes.parse(ByteBuffer.wrap("#EXTM3U\n#EXTINF:10 a=\"1\" b=\"2\",title\nfirst.ts\n".getBytes(UTF_8)));
+            assertThat(playlist.segments().get(0).attributes().size(), is(2));
+        }
+    }
+
+    @Test
+    @Tag("Loader")
+    @DisplayName("A file larger than the limit isn't read")
+    public void fileSize() throws URISyntaxException {
+        var loader = PlaylistLoader.builder().limits(Limits.NONE.withMaxBytes(100)).build();
+        Throwable exception = assertThrows(RuntimeException.class, () -> loader.read(path(iptv)));
+        assertThat(exception.getMessage(), is("The playlist exceeds the limit of 100 bytes"));
+    }
+
+    @Test
+    @DisplayName("Limits must be positive")
+    public void positive() {
+        assertThrows(RuntimeException.class, () -> Limits.NONE.withMaxSegments(0));
+        assertThrows(RuntimeException.class, () -> Limits.NONE.withDeadline(Duration.ZERO));
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.aowss.m3u;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.*;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Live playlists from https://tools.ietf.org/html/rfc8216#section-6.2.2")
+public class LivePlaylistTrackerTest {
+
+    private static WireMockServer wireMockServer;
+
+    @BeforeAll
+    static void setUpWireMock() {
+        wireMockServer = new WireMockServer(8095);
+        wireMockServer.start();
+    }
+
+    @AfterAll
+    static void tearDownWireMock() {
+        wireMockServer.stop();
+    }
+
+    static String body(long mediaSequence, int size) {
+        return window(mediaSequence, size).collect(Collectors.joining("\n", "", "\n"));
+    }
+
+    static Stream<String> window(long mediaSequence, int size) {
+        List<String> lines = new ArrayList<>(List.of("#EXTM3U", "#EXT-X-TARGETDURATION:10", "#EXT-X-MEDIA-SEQUENCE:" + mediaSequence));
+        for (long i = mediaSequence; i < mediaSequence + size; i++) {
+            lines.add("#EXTINF:9.009,");
+            lines.add("http://media.example.com/segment" + i + ".ts");
+        }
+        return lines.stream();
+    }
+
+    @Test
+    @Tag("Live")
+    @DisplayName("The first refresh adds every segment of the window")
+    public void firstRefresh() {
+        var tracker = new LivePlaylistTracker(URI.create("http://localhost:8090/live.m3u8"));
+        var delta = tracker.refresh(window(10, 3));
+        assertThat(delta.added().size(), is(3));
+        assertThat(delta.removed(), is(empty()));
+        assertThat(tracker.current(), is(delta.playlist()));
+    }
+
+    @Test
+    @Tag("Live")
+    @DisplayName("Segments that slid out of the window are removed and new ones are added")
+    public void slidingWindow() {
+        var tracker = new LivePlaylistTracker(URI.create("http://localhost:8090/live.m3u8"));
+        var first = tracker.refresh(window(10, 3)).playlist();
+        var delta = tracker.refresh(window(12, 3));
+        assertThat(delta.removed(), is(first.segments().subList(0, 2)));
+        assertThat(delta.added().size(), is(2));
+        assertThat(delta.added().get(0).uri(), is(URI.create("http://media.example.com/segment13.ts")));
+        assertThat(delta.playlist().segments().get(0), is(sameInstance(first.segments().get(2))));
+    }
+
+    @Test
+    @Tag("Live")
+    @DisplayName("Nothing changes when the window is the same")
+    public void unchanged() {
+        var tracker = new LivePlaylistTracker(URI.create("http://localhost:8090/live.m3u8"));
+        tracker.refresh(window(10, 3));
+        var delta = tracker.refresh(window(10, 3));
+        assertThat(delta.added(), is(empty()));
+        assertThat(delta.removed(), is(empty()));
+    }
+
+    @Test
+    @Tag("Live")
+    @DisplayName("A segment whose URI changed for the same media sequence number is parsed again")
+    public void changedSegment() {
+        var tracker = new LivePlaylistTracker(URI.create("http://localhost:8090/live.m3u8"));
+        tracker.refresh(window(10, 1));
+        var delta = tracker.refresh(Stream.of("#EXTM3U", "#EXT-X-MEDIA-SEQUENCE:10", "#EXTINF:4.004,", "http://backup.example.com/segment10.ts"));
+        assertThat(delta.playlist().segments().get(0).duration(), is(4.004f));
+        assertThat(delta.playlist().segments().get(0).uri(), is(URI.create("http://backup.example.com/segment10.ts")));
+    }
+
+    @Test
+    @Tag("Live")
+    @DisplayName("An origin that starts over with the same media sequence numbers and new URIs replaces the segments")
+    public void restartSameSequence() {
+        var tracker = new LivePlaylistTracker(URI.create("http://localhost:8090/live.m3u8"));
+        var first = tracker.refresh(window(10, 3)).playlist();
+        var delta = tracker.refresh(Stream.of("#EXTM3U", "#EXT-X-MEDIA-SEQUENCE:11", "#EXTINF:9.009,", "http://media.example.com/segment11.ts", "#EXTINF:4.004,", "http://backup.example.com/segment12.ts", "#EXTINF:4.004,", "http://backup.example.com/segment13.ts"));
+        assertThat(delta.removed(), is(List.of(first.segments().get(0), first.segments().get(2))));
+        assertThat(delta.added(), is(delta.playlist().segments().subList(1, 3)));
+        assertThat(delta.added().get(0).uri(), is(URI.create("http://backup.example.com/segment12.ts")));
+
+        var restart = tracker.refresh(Stream.of("#EXTM3U", "#EXT-X-MEDIA-SEQUENCE:11", "#EXTINF:4.004,", "http://origin.example.com/a.ts", "#EXTINF:4.004,", "http://origin.example.com/b.ts", "#EXTINF:4.004,", "http://origin.example.com/c.ts"));
+        assertThat(restart.removed(), is(delta.playlist().segments()));
+        assertThat(restart.added(), is(restart.playlist().segments()));
+    }
+
+    @Test
+    @Tag("Live")
+    @DisplayName("A media sequence number going backwards replaces the whole window")
+    public void restart() {
+        var tracker = new LivePlaylistTracker(URI.create("http://localhost:8090/live.m3u8"));
+        tracker.refresh(window(10, 3));
+        var delta = tracker.refresh(window(0, 2));
+        assertThat(delta.added().size(), is(2));
+        assertThat(delta.removed().size(), is(3));
+    }
+
+    @Test
+    @Tag("Live")
+    @DisplayName("Only media playlists can be tracked")
+    public void masterPlaylist() {
+        var tracker = new LivePlaylistTracker(URI.create("http://localhost:8090/master.m3u8"));
+        Throwable exception = assertThrows(RuntimeException.class, () -> tracker.refresh(Stream.of("#EXTM3U", "#EXT-X-STREAM-INF:BANDWIDTH=1280000", "low.m3u8")));
+        assertThat(exception.getMessage(), is("Only media playlists can be tracked"));
+    }
+
+    @Test
+    @Tag("Live")
+    @DisplayName("The playlist is downloaded from its URI and the segments still in the window are reused")
+    public void uriRefresh() {
+        var tracker = new LivePlaylistTracker(URI.create("http://localhost:8095/live/index.m3u8"));
+        wireMockServer.stubFor(get(urlEqualTo("/live/index.m3u8")).willReturn(aResponse().withStatus(200).withBody(body(10, 3))));
+        var first = tracker.refresh().playlist();
+        assertThat(first.segments().size(), is(3));
+        wireMockServer.stubFor(get(urlEqualTo("/live/index.m3u8")).willReturn(aResponse().withStatus(200).withBody(body(12, 3))));
+        var delta = tracker.refresh();
+        assertThat(delta.removed(), is(first.segments().subList(0, 2)));
+        assertThat(delta.added().get(0).uri(), is(URI.create("http://media.example.com/segment13.ts")));
+        assertThat(delta.playlist().segments().get(0), is(sameInstance(first.segments().get(2))));
+        assertThat(tracker.current(), is(delta.playlist()));
+    }
+
+    @Test
+    @Tag("Live")
+    @DisplayName("A slow download doesn't hold up the other refreshes")
+    public void slowDownload() {
+        var tracker = new LivePlaylistTracker(URI.create("http://localhost:8095/live/slow.m3u8"));
+        wireMockServer.stubFor(get(urlEqualTo("/live/slow.m3u8")).willReturn(aResponse().withStatus(200).withFixedDelay(2000).withBody(body(12, 3))));
+        var slow = CompletableFuture.supplyAsync(tracker::refresh);
+        long start = System.nanoTime();
+        tracker.refresh(window(10, 3));
+        assertThat(System.nanoTime() - start, lessThan(1_000_000_000L));
+        assertThat(slow.isDone(), is(false));
+        var delta = slow.join();
+        assertThat(delta.added().size(), is(2));
+        assertThat(delta.removed().size(), is(2));
+    }
+
+}
@@ -78,4 +78,11 @@ public class MediaSegmentTest {
         assertThat(result, is(Map.of("key1", "value 1", "key2", "value2")));
     }
 
+    @Test
+    void emptyQuoted() {
+        var input = "key1=\"\" key2=\"value2\"";
+        var result = MediaSegment.parseAttributes(input);
+        assertThat(result, is(Map.of("key1", "", "key2", "value2")));
+    }
+
 }
@@ -0,0 +1,90 @@
+package com.aowss.m3u;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Parsing chunks of a playlist in parallel")
+public class ParallelParsingTest {
+
+    static ForkJoinPool pool                    = new ForkJoinPool(4);
+    static Function<ByteBuffer, Playlist> parseBufferInParallel = PlaylistLoader.builder().parallel(pool).build()::parse;
+
+    @AfterAll
+    static void shutdown() {
+        pool.shutdown();
+    }
+
+    static String vod(int segments, int broken, String brokenLine) {
+        var content = new StringBuilder("#EXTM3U\r\n#EXT-X-TARGETDURATION:10\r\n#EXT-X-MEDIA-SEQUENCE:7\r\n");
+        for (int i = 0; i < segments; i++) {
+            content.append("#EXTINF:").append(i % 10).append(".5 tvg-id=\"").append(i).append("\",Segment ").append(i).append("\r\n");
+            if (i % 100 == 0) content.append("# comment\r\n\r\n");
+            content.append(i == broken ? brokenLine : "http://media.example.com/segment" + i + ".ts").append("\r\n");
+        }
+        return content.append("#EXT-X-ENDLIST\r\n").toString();
+    }
+
+    @Test
+    @Tag("Parallel")
+    @DisplayName("Parsing in parallel gives the same playlist as parsing sequentially")
+    public void samePlaylist() {
+        var content = ByteBuffer.wrap(vod(4_000, -1, null).getBytes(UTF_8));
+        var playlist = (MediaPlaylist) parseBufferInParallel.apply(content);
+        assertThat(playlist, is(PlaylistParser.parseBuffer.apply(content)));
+        assertThat(playlist.segments().size(), is(4_000));
+        assertThat(playlist.mediaSequence(), is(7L));
+        assertThat(playlist.endList(), is(true));
+    }
+
+    @Test
+    @Tag("Parallel")
+    @DisplayName("Parsing in parallel reports the same errors as parsing sequentially")
+    public void sameErrors() {
+        for (String brokenLine : new String[] { "http://media.example.com/\u0007.ts", "http://media.example.com/ segment.ts", "#EXTINF:1,", "#EXT-X-STREAM-INF:BANDWIDTH=1", "" }) {
+            for (int broken : new int[] { 0, 1_000, 2_499, 3_999 }) {
+                var content = ByteBuffer.wrap(vod(4_000, broken, brokenLine).getBytes(UTF_8));
+                Throwable expected = assertThrows(RuntimeException.class, () -> PlaylistParser.parseBuffer.apply(content));
+                Throwable exception = assertThrows(RuntimeException.class, () -> parseBufferInParallel.apply(content));
+                assertThat(brokenLine + " at " + broken, exception.getMessage(), is(expected.getMessage()));
+            }
+        }
+    }
+
+    @Test
+    @Tag("Parallel")
+    @DisplayName("A tag without URI at the end of a chunk is reported like when parsing sequentially")
+    public void pendingTag() {
+        //  Chunks are at least 64 KB long, so the first chunk ends around the 800th segment
+        for (int broken = 700; broken < 900; broken++) {
+            var content = ByteBuffer.wrap(vod(4_000, broken, "").getBytes(UTF_8));
+            Throwable expected = assertThrows(RuntimeException.class, () -> PlaylistParser.parseBuffer.apply(content));
+            Throwable exception = assertThrows(RuntimeException.class, () -> parseBufferInParallel.apply(content));
+            assertThat("Missing URI at " + broken, exception.getMessage(), is(expected.getMessage()));
+        }
+    }
+
+    @Test
+    @Tag("Parallel")
+    @DisplayName("Limits are enforced like when parsing sequentially, however the segments are split in chunks")
+    public void limits() {
+        var content = ByteBuffer.wrap(vod(4_000, -1, null).getBytes(UTF_8));
+        for (Limits limits : new Limits[] { Limits.NONE.withMaxSegments(1_000), Limits.NONE.withMaxSegments(3_999), Limits.NONE.withMaxLineLength(38) }) {
+            Throwable expected = assertThrows(RuntimeException.class, () -> PlaylistLoader.builder().limits(limits).build().parse(content));
+            Throwable exception = assertThrows(RuntimeException.class, () -> PlaylistLoader.builder().limits(limits).parallel(pool).build().parse(content));
+            assertThat(limits.toString(), exception.getMessage(), is(expected.getMessage()));
+        }
+        assertThat(PlaylistLoader.builder().limits(Limits.NONE.withMaxSegments(4_000)).parallel(pool).build().parse(content), is(PlaylistParser.parseBuffer.apply(content)));
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.aowss.m3u;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.aowss.m3u.PlaylistReaderTest.readFileContent;
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Caching of downloaded playlists")
+public class PlaylistCacheTest {
+
+    private static WireMockServer wireMockServer;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @BeforeAll
+    static void setUpWireMock() throws IOException {
+        wireMockServer = new WireMockServer(8092);
+        wireMockServer.start();
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/live.m3u8")).willReturn(aResponse().withStatus(200).withHeader("ETag", "\"v1\"").withBody(readFileContent("live.m3u8"))));
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/live.m3u8")).withHeader("If-None-Match", equalTo("\"v1\"")).atPriority(1).willReturn(aResponse().withStatus(304)));
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/vod.m3u8")).willReturn(aResponse().withStatus(200).withBody(readFileContent("sample.m3u"))));
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/other.m3u8")).willReturn(aResponse().withStatus(200).withBody(readFileContent("sample.m3u"))));
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/slow.m3u8")).willReturn(aResponse().withStatus(200).withFixedDelay(500).withBody(readFileContent("live.m3u8"))));
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/missing.m3u8")).willReturn(aResponse().withStatus(404).withBody(readFileContent("sample.m3u"))));
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/rotating.m3u8")).willReturn(aResponse().withStatus(200).withHeader("ETag", "\"v1\"").withBody(readFileContent("live.m3u8"))));
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/rotating.m3u8")).withHeader("If-None-Match", equalTo("\"v1\"")).atPriority(1).willReturn(aResponse().withStatus(304).withHeader("ETag", "\"v2\"")));
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/rotating.m3u8")).withHeader("If-None-Match", equalTo("\"v2\"")).atPriority(1).willReturn(aResponse().withStatus(304)));
+    }
+
+    @AfterAll
+    static void tearDownWireMock() {
+        wireMockServer.stop();
+    }
+
+    @BeforeEach
+    void resetRequests() {
+        wireMockServer.resetRequests();
+    }
+
+    @Test
+    @Tag("Cache")
+    @DisplayName("A live playlist is served from the cache for half its target duration")
+    public void live() {
+        var cache = new PlaylistCache(10, Duration.ofSeconds(30), clock::get);
+        var uri = URI.create("http://localhost:8092/playlist/live.m3u8");
+        var playlist = cache.get(uri);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(3));
+        assertThat(cache.get(uri), is(sameInstance(playlist)));
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo("/playlist/live.m3u8")));
+        assertThat(cache.statistics(), is(new PlaylistCache.Statistics(1, 1, 0, 0, 1)));
+    }
+
+    @Test
+    @Tag("Cache")
+    @DisplayName("An expired playlist that didn't change is revalidated without being parsed again")
+    public void revalidation() {
+        var cache = new PlaylistCache(10, Duration.ofSeconds(30), clock::get);
+        var uri = URI.create("http://localhost:8092/playlist/live.m3u8");
+        var playlist = cache.get(uri);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        assertThat(cache.get(uri), is(sameInstance(playlist)));
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo("/playlist/live.m3u8")).withHeader("If-None-Match", equalTo("\"v1\"")));
+        assertThat(cache.statistics(), is(new PlaylistCache.Statistics(0, 1, 1, 0, 1)));
+    }
+
+    @Test
+    @Tag("Cache")
+    @DisplayName("A revalidation keeps the validators sent back with the 304 response")
+    public void newValidators() {
+        var cache = new PlaylistCache(10, Duration.ofSeconds(30), clock::get);
+        var uri = URI.create("http://localhost:8092/playlist/rotating.m3u8");
+        cache.get(uri);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        cache.get(uri);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        cache.get(uri);
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo("/playlist/rotating.m3u8")).withHeader("If-None-Match", equalTo("\"v1\"")));
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo("/playlist/rotating.m3u8")).withHeader("If-None-Match", equalTo("\"v2\"")));
+        assertThat(cache.statistics(), is(new PlaylistCache.Statistics(0, 1, 2, 0, 1)));
+    }
+
+    @Test
+    @Tag("Cache")
+    @DisplayName("A response that is neither 200 nor 304 is an error and isn't cached")
+    public void errorStatus() {
+        var cache = new PlaylistCache(10, Duration.ofSeconds(30), clock::get);
+        var uri = URI.create("http://localhost:8092/playlist/missing.m3u8");
+        Throwable exception = assertThrows(RuntimeException.class, () -> cache.get(uri));
+        assertThat(exception.getMessage(), is("The playlist located at " + uri + " couldn't be downloaded : the server answered with status 404"));
+        assertThat(cache.statistics().size(), is(0));
+    }
+
+    @Test
+    @Tag("Cache")
+    @DisplayName("Concurrent misses of the same playlist share a single request")
+    public void coalescing() throws InterruptedException, ExecutionException {
+        var cache = new PlaylistCache(10, Duration.ofSeconds(30), clock::get);
+        var uri = URI.create("http://localhost:8092/playlist/slow.m3u8");
+        var pool = Executors.newFixedThreadPool(8);
+        try {
+            var start = new CountDownLatch(1);
+            List<Future<Playlist>> playlists = new ArrayList<>();
+            for (int i = 0; i < 8; i++) playlists.add(pool.submit(() -> {
+                start.await();
+                return cache.get(uri);
+            }));
+            start.countDown();
+            for (Future<Playlist> playlist : playlists) assertThat(playlist.get(), is(sameInstance(playlists.get(0).get())));
+        } finally {
+            pool.shutdown();
+        }
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo("/playlist/slow.m3u8")));
+    }
+
+    @Test
+    @Tag("Cache")
+    @DisplayName("A playlist with an EXT-X-ENDLIST tag never expires")
+    public void endList() {
+        var cache = new PlaylistCache(10, Duration.ofSeconds(30), clock::get);
+        var uri = URI.create("http://localhost:8092/playlist/vod.m3u8");
+        cache.get(uri);
+        clock.addAndGet(TimeUnit.DAYS.toNanos(365));
+        cache.get(uri);
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo("/playlist/vod.m3u8")));
+    }
+
+    @Test
+    @Tag("Cache")
+    @DisplayName("The least recently used playlist is evicted when the cache is full")
+    public void eviction() {
+        var cache = new PlaylistCache(1, Duration.ofSeconds(30), clock::get);
+        cache.get(URI.create("http://localhost:8092/playlist/vod.m3u8"));
+        cache.get(URI.create("http://localhost:8092/playlist/other.m3u8"));
+        cache.get(URI.create("http://localhost:8092/playlist/vod.m3u8"));
+        wireMockServer.verify(2, getRequestedFor(urlEqualTo("/playlist/vod.m3u8")));
+        assertThat(cache.statistics(), is(new PlaylistCache.Statistics(0, 3, 0, 2, 1)));
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.aowss.m3u;
+
+import com.aowss.m3u.PlaylistDiff.Difference;
+import com.aowss.m3u.PlaylistDiff.Kind;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@DisplayName("Comparing and merging two versions of a live window")
+public class PlaylistDiffTest {
+
+    static Instant start = Instant.parse("2024-01-01T00:00:00Z");
+    static Function<Stream<String>, Playlist> columnar = lines -> PlaylistLoader.builder().columnar(true).build().parse(lines);
+
+    //  Segment n is 6 seconds long, starts 6n seconds after the start and is named after n
+    static Stream<String> window(long mediaSequence, int first, int count, boolean dated, int discontinuity) {
+        Stream.Builder<String> lines = Stream.builder();
+        lines.add("#EXTM3U").add("#EXT-X-TARGETDURATION:6").add("#EXT-X-MEDIA-SEQUENCE:" + mediaSequence);
+        if (dated) lines.add("#EXT-X-PROGRAM-DATE-TIME:" + start.plusSeconds(6L * first));
+        for (int n = first; n < first + count; n++) {
+            if (n == discontinuity) lines.add("#EXT-X-DISCONTINUITY");
+            lines.add("#EXTINF:6,").add("segment-" + n + ".ts");
+        }
+        return lines.build();
+    }
+
+    static MediaPlaylist media(Function<Stream<String>, Playlist> parser, Stream<String> lines) {
+        return (MediaPlaylist) parser.apply(lines);
+    }
+
+    static List<Kind> kinds(List<Difference> differences) {
+        return differences.stream().map(Difference::kind).toList();
+    }
+
+    @Test
+    @Tag("Media")
+    @DisplayName("Windows are aligned by media sequence number and merged into their union")
+    public void bySequence() {
+        var primary = media(PlaylistParser.parse, window(10, 10, 5, false, -1));
+        var secondary = media(PlaylistParser.parse, window(12, 12, 5, false, -1));
+        var merge = PlaylistDiff.merge.apply(primary).apply(secondary);
+        assertThat(merge.playlist().mediaSequence(), is(10L));
+        assertThat(merge.playlist().segments().size(), is(7));
+        assertThat(merge.playlist().segments().get(6).uri(), is(URI.create("segment-16.ts")));
+        assertThat(kinds(merge.differences()), contains(Kind.MISSING_IN_SECONDARY, Kind.MISSING_IN_SECONDARY, Kind.MISSING_IN_PRIMARY, Kind.MISSING_IN_PRIMARY));
+        assertThat(merge.differences().get(2).sequenceNumber(), is(15L));
+        assertThat(PlaylistDiff.diff.apply(primary).apply(primary).isEmpty(), is(true));
+    }
+
+    @Test
+    @Tag("Media")
+    @DisplayName("Segments with the same media sequence number are compared")
+    public void divergence() {
+        var primary = media(columnar, window(10, 10, 5, false, 12));
+        var secondary = media(columnar, window(10, 10, 5, false, -1).map(line -> line.equals("segment-13.ts") ? "other-13.ts" : line));
+        var differences = PlaylistDiff.diff.apply(primary).apply(secondary);
+        assertThat(kinds(differences), contains(Kind.DISCONTINUITY_MISMATCH, Kind.DIFFERENT_URI));
+        assertThat(differences.get(0).sequenceNumber(), is(12L));
+        assertThat(differences.get(1).secondary().uri(), is(URI.create("other-13.ts")));
+    }
+
+    @Test
+    @Tag("Media")
+    @DisplayName("Windows that date all their segments are aligned by date, whatever their numbering")
+    public void byDateTime() {
+        var primary = media(columnar, window(100, 10, 5, true, -1));
+        var secondary = media(columnar, window(7, 12, 5, true, -1));
+        var merge = PlaylistDiff.merge.apply(primary).apply(secondary);
+        assertThat(kinds(merge.differences()), contains(Kind.MISSING_IN_SECONDARY, Kind.MISSING_IN_SECONDARY, Kind.MISSING_IN_PRIMARY, Kind.MISSING_IN_PRIMARY));
+        var segments = (SegmentStore) merge.playlist().segments();
+        assertThat(merge.playlist().mediaSequence(), is(100L));
+        assertThat(segments.size(), is(7));
+        assertThat(segments.sequenceNumber(6), is(106L));
+        assertThat(segments.get(6).uri(), is(URI.create("segment-16.ts")));
+        assertThat(segments.programDateTime(6), is(start.plusSeconds(6 * 16).toEpochMilli()));
+    }
+
+    @Test
+    @Tag("Media")
+    @DisplayName("Windows that don't follow each other aren't merged")
+    public void disjoint() {
+        var primary = media(PlaylistParser.parse, window(10, 10, 5, false, -1));
+        var secondary = media(PlaylistParser.parse, window(20, 20, 5, false, -1));
+        var merge = PlaylistDiff.merge.apply(primary).apply(secondary);
+        assertThat(merge.playlist().segments(), is(primary.segments()));
+        assertThat(merge.differences().size(), is(10));
+        assertThat(merge.differences().get(9).sequenceNumber(), is(24L));
+    }
+
+    @Test
+    @Tag("Media")
+    @DisplayName("Large DVR windows are aligned in a single pass")
+    public void large() {
+        var primary = media(columnar, window(0, 0, 100_000, true, -1));
+        var secondary = media(columnar, window(1_000, 1_000, 100_000, true, 50_000));
+        var merge = PlaylistDiff.merge.apply(primary).apply(secondary);
+        assertThat(merge.playlist().segments().size(), is(101_000));
+        assertThat(merge.differences().size(), is(2_001));
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.aowss.m3u;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static com.aowss.m3u.PlaylistEncoding.WINDOWS_1252;
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Encoding of legacy playlist files")
+public class PlaylistEncodingTest {
+
+    static String[] utf8Playlists               = { "sample.m3u", "live.m3u8", "master.m3u8", "with-blank-lines.m3u", "with-comment-lines.m3u", "vget-1.m3u" };
+
+    private Path path(String resource) throws URISyntaxException {
+        return Paths.get(getClass().getClassLoader().getResource(resource).toURI());
+    }
+
+    private static ByteBuffer bytes(String content, Charset charset) {
+        return ByteBuffer.wrap(content.getBytes(charset));
+    }
+
+    @Test
+    @Tag("Encoding")
+    @DisplayName("The encoding is worked out from the extension, the BOM and the bytes")
+    public void detect() {
+        Path m3u = Paths.get("legacy.m3u"), m3u8 = Paths.get("legacy.m3u8");
+        assertThat(PlaylistEncoding.detect(m3u, bytes("#EXTM3U\nhttp://example.com/a.ts\n", UTF_8)), is(US_ASCII));
+        assertThat(PlaylistEncoding.detect(m3u, bytes("#EXTM3U\n#EXTINF:10,Télé\n", UTF_8)), is(UTF_8));
+        assertThat(PlaylistEncoding.detect(m3u, bytes("#EXTM3U\n#EXTINF:10,Télé\n", ISO_8859_1)), is(WINDOWS_1252));
+        assertThat(PlaylistEncoding.detect(m3u8, bytes("#EXTM3U\n#EXTINF:10,Télé\n", ISO_8859_1)), is(UTF_8));
+        assertThat(PlaylistEncoding.detect(m3u, bytes("\uFEFF#EXTM3U\n", UTF_8)), is(UTF_8));
+        assertThat(PlaylistEncoding.detect(m3u, bytes("\uFEFF#EXTM3U\n", UTF_16BE)), is(UTF_16BE));
+        assertThat(PlaylistEncoding.detect(m3u, bytes("\uFEFF#EXTM3U\n", UTF_16LE)), is(UTF_16LE));
+        //  An encoded surrogate and an overlong slash aren't UTF-8
+        assertThat(PlaylistEncoding.detect(m3u, ByteBuffer.wrap(new byte[] { '#', (byte) 0xED, (byte) 0xA0, (byte) 0x80 })), is(WINDOWS_1252));
+        assertThat(PlaylistEncoding.detect(m3u, ByteBuffer.wrap(new byte[] { '#', (byte) 0xC0, (byte) 0xAF })), is(WINDOWS_1252));
+        //  Only the bytes from the position to the limit are looked at
+        assertThat(PlaylistEncoding.detect(m3u, ByteBuffer.wrap(new byte[] { (byte) 0xE9, '#', 'E', 'X', 'T', 'M', '3', 'U', '\n', 'a', (byte) 0xE9 }).position(1).limit(10)), is(US_ASCII));
+    }
+
+    @Test
+    @Tag("Encoding")
+    @DisplayName("UTF-8 content without BOM is used as it is, without being decoded")
+    public void notDecoded() throws URISyntaxException, IOException {
+        for (String resource : utf8Playlists) {
+            ByteBuffer content = ByteBuffer.wrap(PlaylistReaderTest.readFileContent(resource).getBytes(UTF_8));
+            assertThat(resource, PlaylistEncoding.toUTF8(path(resource), content), sameInstance(content));
+        }
+        ByteBuffer utf8 = bytes("#EXTM3U\n#EXTINF:10,Télé\n", UTF_8);
+        assertThat(PlaylistEncoding.toUTF8(Paths.get("legacy.m3u"), utf8), sameInstance(utf8));
+    }
+
+    @Test
+    @Tag("Encoding")
+    @DisplayName("Legacy content is transcoded to UTF-8 and the BOM of a .m3u file is dropped")
+    public void transcoded() {
+        String content = "#EXTM3U\n#EXTINF:10,C’est pas sorcier\nhttp://example.com/a.ts\n";
+        Path m3u = Paths.get("legacy.m3u");
+        assertThat(PlaylistEncoding.toUTF8(m3u, bytes(content, WINDOWS_1252)), is(bytes(content, UTF_8)));
+        assertThat(PlaylistEncoding.toUTF8(m3u, bytes("\uFEFF" + content, UTF_8)), is(bytes(content, UTF_8)));
+        assertThat(PlaylistEncoding.toUTF8(m3u, bytes("\uFEFF" + content, UTF_16LE)), is(bytes(content, UTF_8)));
+        assertThat(PlaylistEncoding.toUTF8(m3u, bytes("\uFEFF" + content, UTF_16BE)), is(bytes(content, UTF_8)));
+        assertThat(PlaylistEncoding.toUTF8(Paths.get("legacy.m3u8"), bytes("\uFEFF" + content, UTF_8)), is(bytes("\uFEFF" + content, UTF_8)));
+    }
+
+    @Test
+    @Tag("Encoding")
+    @DisplayName("UTF-16 without a BOM and bytes Windows-1252 doesn't define are reported")
+    public void reported() {
+        String content = "#EXTM3U\n#EXTINF:10,Télé\nhttp://example.com/a.ts\n";
+        Path m3u = Paths.get("legacy.m3u");
+        assertThat(PlaylistEncoding.detect(m3u, bytes(content, UTF_16LE)), is(UTF_16LE));
+        assertThat(PlaylistEncoding.detect(m3u, bytes(content, UTF_16BE)), is(UTF_16BE));
+        Throwable exception = assertThrows(RuntimeException.class, () -> PlaylistEncoding.toUTF8(m3u, bytes(content, UTF_16LE)));
+        assertThat(exception.getMessage(), is("The playlist is UTF-16LE encoded without a BOM"));
+        var diagnostics = new Diagnostics(10);
+        assertThat(PlaylistEncoding.toUTF8(m3u, bytes(content, UTF_16BE), diagnostics), is(bytes(content, UTF_8)));
+        assertThat(diagnostics.list().get(0).rule(), is(Diagnostics.Rule.NOT_UTF8));
+
+        byte[] undefined = "#EXTM3U\n#EXTINF:10,Tél?\nhttp://example.com/a.ts\n".getBytes(WINDOWS_1252);
+        undefined[22] = (byte) 0x81;
+        exception = assertThrows(RuntimeException.class, () -> PlaylistEncoding.toUTF8(m3u, ByteBuffer.wrap(undefined)));
+        assertThat(exception.getMessage(), is("Line 2 : byte 0x81 isn't a windows-1252 character"));
+        var loader = PlaylistLoader.builder().lenient(10).detectCharset().build();
+        var playlist = (MediaPlaylist) loader.parse(m3u, ByteBuffer.wrap(undefined));
+        assertThat(playlist.segments().get(0).title(), is("Tél\uFFFD"));
+        assertThat(loader.diagnostics().size(), is(1));
+        assertThat(loader.diagnostics().get(0).lineNumber(), is(2L));
+    }
+
+    @Test
+    @Tag("Encoding")
+    @DisplayName("A Windows-1252 playlist is read with its accents, UTF-8 playlists are read as fromFile reads them")
+    public void reader() throws URISyntaxException {
+        Path legacy = path("windows-1252.m3u");
+        assertThrows(RuntimeException.class, () -> PlaylistReader.fromFile.apply(legacy));
+        var playlist = (MediaPlaylist) PlaylistReader.fromFileDetectingCharset.apply(legacy);
+        assertThat(playlist.segments().size(), is(2));
+        assertThat(playlist.segments().get(0).title(), is("Télé Matin"));
+        assertThat(playlist.segments().get(0).attributes().get("group-title"), is("Français"));
+        assertThat(playlist.segments().get(1).title(), is("C’est pas sorcier"));
+        for (String resource : utf8Playlists) {
+            assertThat(resource, PlaylistReader.fromFileDetectingCharset.apply(path(resource)), is(PlaylistReader.fromFile.apply(path(resource))));
+        }
+        var loader = PlaylistLoader.builder().detectCharset().build();
+        assertThat(loader.read(legacy), is(playlist));
+        assertThat(PlaylistLoader.builder().detectCharset().lazy(true).build().read(legacy), is(playlist));
+    }
+
+}
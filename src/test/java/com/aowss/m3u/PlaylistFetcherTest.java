@@ -0,0 +1,125 @@
+package com.aowss.m3u;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.aowss.m3u.PlaylistReaderTest.readFileContent;
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Concurrent downloads of playlists")
+public class PlaylistFetcherTest {
+
+    private static WireMockServer wireMockServer;
+
+    static String master = """
+            #EXTM3U
+            #EXT-X-STREAM-INF:BANDWIDTH=1280000
+            low/index.m3u8
+            #EXT-X-STREAM-INF:BANDWIDTH=2560000
+            /playlist/mid/index.m3u8
+            """;
+
+    static String masterWithRenditions = """
+            #EXTM3U
+            #EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID="aac",NAME="English",URI="audio/en.m3u8"
+            #EXT-X-MEDIA:TYPE=CLOSED-CAPTIONS,GROUP-ID="cc",NAME="English",INSTREAM-ID="CC1"
+            #EXT-X-STREAM-INF:BANDWIDTH=1280000,AUDIO="aac",CLOSED-CAPTIONS="cc"
+            low/index.m3u8
+            """;
+
+    @BeforeAll
+    static void setUpWireMock() throws IOException {
+        wireMockServer = new WireMockServer(8091);
+        wireMockServer.start();
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/master.m3u8")).willReturn(aResponse().withStatus(200).withBody(master)));
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/low/index.m3u8")).willReturn(aResponse().withStatus(200).withBody(readFileContent("sample.m3u"))));
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/mid/index.m3u8")).willReturn(aResponse().withStatus(200).withBody(readFileContent("live.m3u8"))));
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/renditions.m3u8")).willReturn(aResponse().withStatus(200).withBody(masterWithRenditions)));
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/audio/en.m3u8")).willReturn(aResponse().withStatus(200).withBody(readFileContent("live.m3u8"))));
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/wrong")).willReturn(aResponse().withStatus(200).withHeader("Content-Type", "text/xml").withBody(readFileContent("sample.m3u"))));
+    }
+
+    @AfterAll
+    static void tearDownWireMock() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    @Tag("URL")
+    @DisplayName("A batch of URIs is downloaded concurrently and the results keep the order of the URIs")
+    public void fetchAll() {
+        try (var fetcher = new PlaylistFetcher(1)) {
+            var playlists = fetcher.fetchAll(List.of(
+                    URI.create("http://localhost:8091/playlist/low/index.m3u8"),
+                    URI.create("http://localhost:8091/playlist/mid/index.m3u8")
+            ));
+            assertThat(((MediaPlaylist) playlists.get(0).join()).endList(), is(true));
+            assertThat(((MediaPlaylist) playlists.get(1).join()).mediaSequence(), is(2680L));
+        }
+    }
+
+    @Test
+    @Tag("URL")
+    @DisplayName("The variant streams of a master playlist are downloaded once the master playlist is")
+    public void fetchVariants() {
+        try (var fetcher = new PlaylistFetcher(4)) {
+            var playlists = fetcher.fetchVariants(URI.create("http://localhost:8091/playlist/master.m3u8")).join();
+            assertThat(playlists.size(), is(2));
+            assertThat(playlists.get(0), instanceOf(MediaPlaylist.class));
+            assertThat(((MediaPlaylist) playlists.get(1)).targetDuration(), is(8L));
+        }
+    }
+
+    @Test
+    @Tag("URL")
+    @DisplayName("The renditions that have a URI are downloaded after the variant streams")
+    public void fetchRenditions() {
+        try (var fetcher = new PlaylistFetcher(4)) {
+            var playlists = fetcher.fetchVariants(URI.create("http://localhost:8091/playlist/renditions.m3u8")).join();
+            assertThat(playlists.size(), is(2));
+            assertThat(((MediaPlaylist) playlists.get(0)).endList(), is(true));
+            assertThat(((MediaPlaylist) playlists.get(1)).mediaSequence(), is(2680L));
+            wireMockServer.verify(1, getRequestedFor(urlEqualTo("/playlist/audio/en.m3u8")));
+        }
+    }
+
+    @Test
+    @Tag("URL")
+    @DisplayName("Hosts are no longer tracked once their downloads are over")
+    public void idleHosts() {
+        try (var fetcher = new PlaylistFetcher(1)) {
+            var playlists = fetcher.fetchAll(List.of(
+                    URI.create("http://localhost:8091/playlist/low/index.m3u8"),
+                    URI.create("http://127.0.0.1:8091/playlist/mid/index.m3u8"),
+                    URI.create("http://localhost:8091/playlist/wrong")
+            ));
+            CompletableFuture.allOf(playlists.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+            assertThat(fetcher.hosts(), is(0));
+        }
+    }
+
+    @Test
+    @Tag("URL")
+    @DisplayName("A failed download only fails its own future")
+    public void failure() {
+        try (var fetcher = new PlaylistFetcher(2)) {
+            List<CompletableFuture<Playlist>> playlists = fetcher.fetchAll(List.of(
+                    URI.create("http://localhost:8091/playlist/wrong"),
+                    URI.create("http://localhost:8091/playlist/low/index.m3u8")
+            ));
+            Throwable exception = assertThrows(CompletionException.class, () -> playlists.get(0).join());
+            assertThat(exception.getCause().getMessage(), startsWith("The URI must end with either .m3u8 or .m3u"));
+            assertThat(playlists.get(1).join().length(), is(10L));
+        }
+    }
+
+}
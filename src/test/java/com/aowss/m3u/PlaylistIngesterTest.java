@@ -0,0 +1,123 @@
+package com.aowss.m3u;
+
+import com.aowss.m3u.PlaylistIngester.Status;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+@DisplayName("Ingesting a directory tree of playlists")
+public class PlaylistIngesterTest {
+
+    static String[] validPlaylists              = { "sample.m3u", "live.m3u8", "master.m3u8", "with-blank-lines.m3u", "with-comment-lines.m3u", "tv_channels_UBPMPAN7T_plus.m3u" };
+    static String[] invalidPlaylists            = { "control-character.m3u", "no-extm3u.m3u" };
+
+    //  Each playlist is copied in 10 subdirectories
+    private void catalogue(Path directory) throws Exception {
+        for (int i = 0; i < 10; i++) {
+            Path subdirectory = Files.createDirectories(directory.resolve("channel-" + i));
+            for (String resource : validPlaylists) Files.copy(Paths.get(getClass().getClassLoader().getResource(resource).toURI()), subdirectory.resolve(resource));
+            for (String resource : invalidPlaylists) Files.copy(Paths.get(getClass().getClassLoader().getResource(resource).toURI()), subdirectory.resolve(resource));
+            Files.writeString(subdirectory.resolve("readme.txt"), "not a playlist");
+        }
+    }
+
+    @Test
+    @Tag("Batch")
+    @DisplayName("Every playlist of the tree is parsed once and reported, whether it is valid or not")
+    public void ingest(@TempDir Path directory) throws Exception {
+        catalogue(directory);
+        Map<Path, Playlist> parsed = new ConcurrentHashMap<>();
+        var report = new PlaylistIngester(4, 2).ingest(directory, parsed::put);
+        assertThat(report.files().size(), is(10 * (validPlaylists.length + invalidPlaylists.length)));
+        assertThat(report.count(Status.PARSED), is(10L * validPlaylists.length));
+        assertThat(report.count(Status.FAILED), is(10L * invalidPlaylists.length));
+        assertThat(parsed.size(), is(10 * validPlaylists.length));
+        Path sample = directory.resolve("channel-3").resolve("sample.m3u");
+        assertThat(parsed.get(sample), is(PlaylistReader.fromFile.apply(sample)));
+        var failure = report.files().stream().filter(file -> file.path().equals(directory.resolve("channel-0").resolve("no-extm3u.m3u"))).findFirst().orElseThrow();
+        assertThat(failure.error(), is("The file must start with the EXTM3U tag"));
+        assertThat(report.bytes(), greaterThan(0L));
+        assertThat(report.filesPerSecond(), greaterThan(0.0));
+    }
+
+    @Test
+    @Tag("Batch")
+    @DisplayName("Legacy playlists are transcoded by loaders that detect their charset")
+    public void legacy(@TempDir Path directory) throws Exception {
+        Path legacy = directory.resolve("windows-1252.m3u");
+        Files.copy(Paths.get(getClass().getClassLoader().getResource("windows-1252.m3u").toURI()), legacy);
+        Map<Path, Playlist> parsed = new ConcurrentHashMap<>();
+        var report = new PlaylistIngester(2, 2, () -> PlaylistLoader.builder().detectCharset().build()).ingest(directory, parsed::put);
+        assertThat(report.count(Status.PARSED), is(1L));
+        assertThat(((MediaPlaylist) parsed.get(legacy)).segments().get(0).title(), is("Télé Matin"));
+        assertThat(new PlaylistIngester(2, 2).ingest(directory, (path, playlist) -> {}).count(Status.FAILED), is(1L));
+    }
+
+    @Test
+    @Tag("Batch")
+    @DisplayName("Files recorded in the manifest aren't parsed again unless their content changed")
+    public void manifest(@TempDir Path directory, @TempDir Path work) throws Exception {
+        catalogue(directory);
+        Path manifest = work.resolve("manifest.tsv");
+        var ingester = new PlaylistIngester(2, 8);
+        ingester.ingest(directory, manifest, (path, playlist) -> {});
+
+        var report = ingester.ingest(directory, manifest, (path, playlist) -> {});
+        assertThat(report.count(Status.UNCHANGED), is(10L * validPlaylists.length));
+        assertThat(report.count(Status.FAILED), is(10L * invalidPlaylists.length));
+
+        Path touched = directory.resolve("channel-1").resolve("live.m3u8");
+        Files.setLastModifiedTime(touched, FileTime.fromMillis(Files.getLastModifiedTime(touched).toMillis() + 60_000));
+        Path modified = directory.resolve("channel-2").resolve("sample.m3u");
+        FileTime before = Files.getLastModifiedTime(modified);
+        Files.writeString(modified, Files.readString(modified).replace("#EXT-X-TARGETDURATION:10", "#EXT-X-TARGETDURATION:11"));
+        Files.setLastModifiedTime(modified, FileTime.fromMillis(before.toMillis() + 60_000));
+        Map<Path, Playlist> parsed = new ConcurrentHashMap<>();
+        report = ingester.ingest(directory, manifest, parsed::put);
+        assertThat(parsed.keySet(), contains(modified));
+        assertThat(((MediaPlaylist) parsed.get(modified)).targetDuration(), is(11L));
+        assertThat(report.count(Status.UNCHANGED), is(10L * validPlaylists.length - 1));
+    }
+
+    @Test
+    @Tag("Batch")
+    @DisplayName("A single worker with a single slot in the queue still ingests the whole tree")
+    public void backPressure(@TempDir Path directory) throws Exception {
+        catalogue(directory);
+        var report = new PlaylistIngester(1, 1).ingest(directory, (path, playlist) -> {});
+        assertThat(report.files().size(), is(10 * (validPlaylists.length + invalidPlaylists.length)));
+    }
+
+    @Test
+    @Tag("Batch")
+    @DisplayName("A worker that dies stops the walk instead of blocking it")
+    public void deadWorker(@TempDir Path directory) throws Exception {
+        catalogue(directory);
+        var ingester = new PlaylistIngester(2, 1);
+        Throwable exception = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> assertThrows(RuntimeException.class, () -> ingester.ingest(directory, (path, playlist) -> { throw new AssertionError("Sink failure"); })));
+        assertThat(exception.getCause(), instanceOf(AssertionError.class));
+        assertThat(exception.getCause().getMessage(), is("Sink failure"));
+    }
+
+    @Test
+    @DisplayName("An ingester needs at least one worker and one slot in its queue")
+    public void positive() {
+        assertThrows(RuntimeException.class, () -> new PlaylistIngester(0, 1));
+        assertThrows(RuntimeException.class, () -> new PlaylistIngester(1, 0));
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.aowss.m3u;
+
+import com.aowss.m3u.Diagnostics.Rule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Reusable playlist loaders")
+public class PlaylistLoaderTest {
+
+    static String[] validPlaylists              = { "sample.m3u", "live.m3u8", "master.m3u8", "master-with-renditions.m3u8", "with-blank-lines.m3u", "with-comment-lines.m3u", "tv_channels_UBPMPAN7T_plus.m3u", "vget-1.m3u" };
+    static String[] invalidPlaylists            = { "utf8-with-bom.m3u", "control-character.m3u", "not-nfc-normalized.m3u", "no-extm3u.m3u" };
+
+    private Path path(String resource) throws URISyntaxException {
+        return Paths.get(getClass().getClassLoader().getResource(resource).toURI());
+    }
+
+    @Test
+    @Tag("Loader")
+    @DisplayName("A loader reused from one playlist to the next leaves the playlists it already returned unchanged")
+    public void reused() throws URISyntaxException {
+        for (var loader : List.of(PlaylistLoader.builder().build(), PlaylistLoader.builder().lazy(true).bufferSize(16).build())) {
+            List<Playlist> playlists = new ArrayList<>();
+            for (String resource : validPlaylists) playlists.add(loader.read(path(resource)));
+            for (int i = 0; i < validPlaylists.length; i++) {
+                assertThat(validPlaylists[i], playlists.get(i), is(PlaylistReader.fromFile.apply(path(validPlaylists[i]))));
+            }
+        }
+    }
+
+    @Test
+    @Tag("Loader")
+    @DisplayName("A strict loader reports the same errors as the static readers")
+    public void strict() throws URISyntaxException {
+        var loader = PlaylistLoader.builder().strict().build();
+        for (String resource : invalidPlaylists) {
+            Path path = path(resource);
+            Throwable expected = assertThrows(RuntimeException.class, () -> PlaylistReader.fromMappedFile.apply(path));
+            Throwable exception = assertThrows(RuntimeException.class, () -> loader.read(path));
+            assertThat(resource, exception.getMessage(), is(expected.getMessage()));
+        }
+        assertThat(loader.read(path("sample.m3u")), is(PlaylistReader.fromFile.apply(path("sample.m3u"))));
+    }
+
+    @Test
+    @Tag("Loader")
+    @DisplayName("A lenient loader only keeps the diagnostics of the last playlist")
+    public void lenient() throws URISyntaxException {
+        var loader = PlaylistLoader.builder().lenient(10).build();
+        loader.read(path("no-extm3u.m3u"));
+        assertThat(loader.diagnostics().get(0).rule(), is(Rule.NO_EXTM3U));
+        loader.read(path("sample.m3u"));
+        assertThat(loader.diagnostics().isEmpty(), is(true));
+    }
+
+    @Test
+    @Tag("Loader")
+    @DisplayName("A lenient lazy loader reports a malformed EXTINF tag as the eager one does")
+    public void lenientLazy() {
+        byte[] content = "#EXTM3U\n#EXTINF:abc,first\nfirst.ts\n#EXTINF:10,second\nsecond.ts\n".getBytes(UTF_8);
+        var eager = PlaylistLoader.builder().lenient(10).build();
+        var lazy = PlaylistLoader.builder().lenient(10).lazy(true).build();
+        var eagerPlaylist = (MediaPlaylist) eager.parse(ByteBuffer.wrap(content));
+        var lazyPlaylist = (MediaPlaylist) lazy.parse(ByteBuffer.wrap(content));
+        assertThat(lazy.diagnostics(), is(eager.diagnostics()));
+        assertThat(lazy.diagnostics().get(0).rule(), is(Rule.MALFORMED_TAG));
+        assertThat(lazy.diagnostics().get(0).lineNumber(), is(2L));
+        assertThat(lazyPlaylist.segments(), is(eagerPlaylist.segments()));
+        assertThat(lazyPlaylist.segments().size(), is(1));
+    }
+
+    @Test
+    @Tag("Loader")
+    @DisplayName("Playlists in another charset are transcoded to UTF-8")
+    public void charset() {
+        String content = "#EXTM3U\n#EXTINF:10,Café\nhttp://example.com/caf%C3%A9.ts\n";
+        var playlist = (MediaPlaylist) PlaylistLoader.builder().charset(ISO_8859_1).build().parse(ByteBuffer.wrap(content.getBytes(ISO_8859_1)));
+        assertThat(playlist.segments().get(0).title(), is("Café"));
+        assertThat(playlist, is(PlaylistParser.parseBuffer.apply(ByteBuffer.wrap(content.getBytes(UTF_8)))));
+    }
+
+    @Test
+    @Tag("Loader")
+    @DisplayName("Lines handed over by the caller give the same playlist as the bytes, whatever the way the segments are built")
+    public void lines() throws URISyntaxException, IOException {
+        Path path = path("tv_channels_UBPMPAN7T_plus.m3u");
+        var expected = PlaylistReader.fromMappedFile.apply(path);
+        for (var builder : List.of(PlaylistLoader.builder(), PlaylistLoader.builder().columnar(true), PlaylistLoader.builder().deduplicate(new Deduplicator(1_000)))) {
+            var loader = builder.build();
+            assertThat(loader.parse(Files.readString(path).lines()), is(expected));
+            assertThat(loader.read(path), is(expected));
+        }
+        Throwable exception = assertThrows(RuntimeException.class, () -> PlaylistLoader.builder().lazy(true).build().parse(Stream.of("#EXTM3U")));
+        assertThat(exception.getMessage(), is("Lazily parsed playlists must be read from their bytes"));
+    }
+
+    @Test
+    @Tag("Loader")
+    @DisplayName("Options that build the segments in different ways can't be combined")
+    public void combinations() {
+        var pool = ForkJoinPool.commonPool();
+        for (var builder : List.of(PlaylistLoader.builder().lazy(true).columnar(true), PlaylistLoader.builder().columnar(true).deduplicate(new Deduplicator(10)), PlaylistLoader.builder().lazy(true).deduplicate(new Deduplicator(10)))) {
+            Throwable exception = assertThrows(RuntimeException.class, builder::build);
+            assertThat(exception.getMessage(), is("The segments can only be parsed lazily, stored in columns or deduplicated, not a combination of them"));
+        }
+        for (var builder : List.of(PlaylistLoader.builder().lenient(10).parallel(pool), PlaylistLoader.builder().lazy(true).parallel(pool), PlaylistLoader.builder().columnar(true).parallel(pool))) {
+            Throwable exception = assertThrows(RuntimeException.class, builder::build);
+            assertThat(exception.getMessage(), is("Only strict loaders that build the segments themselves can parse in parallel"));
+        }
+    }
+
+    @Test
+    @Tag("Loader")
+    @DisplayName("A loader allocates less than the static reader once its buffers are large enough")
+    public void steadyState() throws URISyntaxException {
+        Path path = path("tv_channels_UBPMPAN7T_plus.m3u");
+        var loader = PlaylistLoader.builder().build();
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        for (int i = 0; i < 5; i++) {
+            loader.read(path);
+            PlaylistReader.fromFile.apply(path);
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 5; i++) loader.read(path);
+        long reused = threads.getThreadAllocatedBytes(thread) - before;
+        before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 5; i++) PlaylistReader.fromFile.apply(path);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertThat(reused, lessThan(allocated));
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.aowss.m3u;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Playlist model from https://tools.ietf.org/html/rfc8216#section-4.3")
+public class PlaylistParserTest {
+
+    static String sample                        = "sample.m3u";
+    static String live                          = "live.m3u8";
+    static String master                        = "master.m3u8";
+    static String iptv                          = "tv_channels_UBPMPAN7T_plus.m3u";
+
+    @Test
+    @Tag("Media")
+    @DisplayName("A Media Playlist contains a list of Media Segments")
+    public void mediaPlaylist() throws URISyntaxException {
+        Path path = Paths.get(getClass().getClassLoader().getResource(sample).toURI());
+        var playlist = PlaylistReader.fromFile.apply(path);
+        assertThat(playlist, instanceOf(MediaPlaylist.class));
+        var mediaPlaylist = (MediaPlaylist) playlist;
+        assertThat(mediaPlaylist.length(), is(10L));
+        assertThat(mediaPlaylist.targetDuration(), is(10L));
+        assertThat(mediaPlaylist.mediaSequence(), is(0L));
+        assertThat(mediaPlaylist.endList(), is(true));
+        assertThat(mediaPlaylist.segments().size(), is(3));
+        assertThat(mediaPlaylist.segments().get(0).duration(), is(9.009f));
+        assertThat(mediaPlaylist.segments().get(2).uri(), is(new URI("http://media.example.com/third.ts")));
+    }
+
+    @Test
+    @Tag("Media")
+    @DisplayName("The EXT-X-MEDIA-SEQUENCE tag indicates the Media Sequence Number of the first Media Segment")
+    public void mediaSequence() throws URISyntaxException {
+        Path path = Paths.get(getClass().getClassLoader().getResource(live).toURI());
+        var playlist = (MediaPlaylist) PlaylistReader.fromFile.apply(path);
+        assertThat(playlist.targetDuration(), is(8L));
+        assertThat(playlist.mediaSequence(), is(2680L));
+        assertThat(playlist.endList(), is(false));
+        assertThat(playlist.segments().size(), is(3));
+    }
+
+    @Test
+    @Tag("Media")
+    @DisplayName("Extended M3U files without any HLS tag are Media Playlists")
+    public void extendedM3U() throws URISyntaxException {
+        Path path = Paths.get(getClass().getClassLoader().getResource(iptv).toURI());
+        var playlist = (MediaPlaylist) PlaylistReader.fromFile.apply(path);
+        assertThat(playlist.segments().size(), is(2981));
+        assertThat(playlist.segments().get(0).title(), is("ABC HD"));
+    }
+
+    @Test
+    @Tag("Master")
+    @DisplayName("A Master Playlist contains a set of Variant Streams")
+    public void masterPlaylist() throws URISyntaxException {
+        Path path = Paths.get(getClass().getClassLoader().getResource(master).toURI());
+        var playlist = PlaylistReader.fromFile.apply(path);
+        assertThat(playlist, instanceOf(MasterPlaylist.class));
+        var masterPlaylist = (MasterPlaylist) playlist;
+        assertThat(masterPlaylist.variants().size(), is(4));
+        assertThat(masterPlaylist.variants().get(0).bandwidth(), is(1280000L));
+        assertThat(masterPlaylist.variants().get(0).codecs(), is("avc1.4d401f,mp4a.40.2"));
+        assertThat(masterPlaylist.variants().get(0).resolution(), is(new Resolution(640, 360)));
+        assertThat(masterPlaylist.variants().get(3).uri(), is(new URI("http://example.com/audio-only.m3u8")));
+    }
+
+    @Test
+    @Tag("Media")
+    @DisplayName("Each Media Segment is specified by a URI and the EXTINF tag that applies to it")
+    public void uriWithoutTag() {
+        Throwable exception = assertThrows(RuntimeException.class, () -> PlaylistParser.parse.apply(Stream.of("#EXTM3U", "http://media.example.com/first.ts")));
+        assertThat(exception.getMessage(), is("Line 2 : a URI must follow either an EXTINF or an EXT-X-STREAM-INF tag"));
+    }
+
+}
@@ -1,15 +1,18 @@
 package com.aowss.m3u;
 
 import com.github.tomakehurst.wiremock.WireMockServer;
+import com.sun.management.UnixOperatingSystemMXBean;
 import org.junit.jupiter.api.*;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.*;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 
@@ -109,6 +112,22 @@ public class PlaylistReaderTest {
         assertThat(PlaylistReader.fromURI.apply(new URI("http://localhost:8090/playlist/right/2")).length(), is(10L));
     }
 
+    @Test
+    @Tag("Path")
+    @DisplayName("The file is closed once it is read, whether it is a valid playlist or not")
+    public void closed() throws URISyntaxException {
+        Assumptions.assumeTrue(ManagementFactory.getOperatingSystemMXBean() instanceof UnixOperatingSystemMXBean);
+        var os = (UnixOperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        Path valid = Paths.get(getClass().getClassLoader().getResource("sample.m3u").toURI());
+        Path invalid = Paths.get(getClass().getClassLoader().getResource("control-character.m3u").toURI());
+        long before = os.getOpenFileDescriptorCount();
+        for (int i = 0; i < 200; i++) {
+            assertThat(PlaylistReader.fromFile.apply(valid).length(), is(10L));
+            assertThrows(RuntimeException.class, () -> PlaylistReader.fromFile.apply(invalid));
+        }
+        assertThat(os.getOpenFileDescriptorCount(), lessThan(before + 10));
+    }
+
     public static String readFileContent(String path) throws IOException {
         return new String(Files.readAllBytes(Paths.get("src", "test", "resources", path)), "UTF-8");
     }
@@ -0,0 +1,86 @@
+package com.aowss.m3u;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Binary snapshots of parsed playlists")
+public class PlaylistSnapshotTest {
+
+    static String[] playlists                   = { "sample.m3u", "live.m3u8", "master.m3u8", "master-with-renditions.m3u8", "with-comment-lines.m3u", "tv_channels_UBPMPAN7T_plus.m3u", "vget-1.m3u" };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @Tag("Snapshot")
+    @DisplayName("Reading a snapshot gives back the playlist it was written from")
+    public void roundTrip() throws URISyntaxException {
+        for (String resource : playlists) {
+            Path path = Paths.get(getClass().getClassLoader().getResource(resource).toURI());
+            var playlist = PlaylistReader.fromFile.apply(path);
+            Path snapshot = directory.resolve(resource + ".snapshot");
+            PlaylistSnapshot.write(playlist, snapshot);
+            assertThat(resource, PlaylistSnapshot.fromSnapshot.apply(snapshot), is(playlist));
+            assertThat(resource, PlaylistSnapshot.fromSnapshotLazily.apply(snapshot), is(playlist));
+        }
+    }
+
+    @Test
+    @Tag("Snapshot")
+    @DisplayName("Durations that aren't a whole number of milliseconds are kept as they are")
+    public void durations() throws URISyntaxException {
+        var segments = List.of(
+                new MediaSegment(9.009f, Map.of(), "", new URI("first.ts")),
+                new MediaSegment(-1, Map.of(), "", new URI("second.ts")),
+                new MediaSegment(1.0001234f, Map.of(), "", new URI("third.ts")),
+                new MediaSegment(Float.MAX_VALUE, Map.of(), "", new URI("fourth.ts"))
+        );
+        var playlist = new MediaPlaylist(9, 10, 0, true, segments);
+        assertThat(PlaylistSnapshot.decode(ByteBuffer.wrap(PlaylistSnapshot.encode(playlist))), is(playlist));
+    }
+
+    @Test
+    @Tag("Snapshot")
+    @DisplayName("The discontinuities, byte ranges, dates and gaps of a SegmentStore are kept")
+    public void columns() {
+        var playlist = (MediaPlaylist) PlaylistLoader.builder().columnar(true).build().parse(SegmentStoreTest.event.lines());
+        var copy = (MediaPlaylist) PlaylistSnapshot.decode(ByteBuffer.wrap(PlaylistSnapshot.encode(playlist)));
+        assertThat(copy, is(playlist));
+        assertThat(SegmentStoreTest.columns((SegmentStore) copy.segments()), is(SegmentStoreTest.columns((SegmentStore) playlist.segments())));
+    }
+
+    @Test
+    @Tag("Snapshot")
+    @DisplayName("A snapshot is smaller than the playlist it was written from")
+    public void compact() throws URISyntaxException, IOException {
+        Path path = Paths.get(getClass().getClassLoader().getResource("tv_channels_UBPMPAN7T_plus.m3u").toURI());
+        assertThat((long) PlaylistSnapshot.encode(PlaylistReader.fromFile.apply(path)).length, lessThan(Files.size(path)));
+    }
+
+    @Test
+    @Tag("Snapshot")
+    @DisplayName("Only snapshots can be read as snapshots")
+    public void notASnapshot() throws URISyntaxException {
+        Path path = Paths.get(getClass().getClassLoader().getResource("sample.m3u").toURI());
+        Throwable exception = assertThrows(RuntimeException.class, () -> PlaylistSnapshot.fromSnapshot.apply(path));
+        assertThat(exception.getMessage(), is("The file isn't a playlist snapshot"));
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.aowss.m3u;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+
+import static com.aowss.m3u.PlaylistReaderTest.readFileContent;
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Parsing a playlist while its body is being received")
+public class PlaylistSubscriberTest {
+
+    private static WireMockServer wireMockServer;
+
+    static String playlist = "#EXTM3U\r\n#EXT-X-TARGETDURATION:10\r\n#EXT-X-MEDIA-SEQUENCE:5\r\n\r\n# comment\r\n#EXTINF:9.009 tvg-id=\"first\",Première\r\nhttp://media.example.com/first.ts\r\n#EXTINF:9.009,\r\nhttp://media.example.com/second.ts\r\n#EXTINF:3.003,\r\nhttp://media.example.com/third.ts\r\n#EXT-X-ENDLIST";
+
+    static class Events implements PlaylistListener {
+        List<String> events = new ArrayList<>();
+
+        @Override
+        public void tag(long lineNumber, String name, String value) {
+            events.add(lineNumber + " tag " + name + " " + value);
+        }
+
+        @Override
+        public void attribute(long lineNumber, String name, String value) {
+            events.add(lineNumber + " attribute " + name + " " + value);
+        }
+
+        @Override
+        public void segment(long sequenceNumber, MediaSegment segment) {
+            events.add("segment " + sequenceNumber + " " + segment.uri());
+        }
+
+        @Override
+        public void variant(VariantStream variant) {
+            events.add("variant " + variant.bandwidth());
+        }
+    }
+
+    static class Subscription implements Flow.Subscription {
+        long requested;
+        boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    @BeforeAll
+    static void setUpWireMock() throws IOException {
+        wireMockServer = new WireMockServer(8093);
+        wireMockServer.start();
+        wireMockServer.stubFor(get(urlEqualTo("/playlist/master.m3u8")).willReturn(aResponse().withStatus(200).withBody(readFileContent("master.m3u8"))));
+    }
+
+    @AfterAll
+    static void tearDownWireMock() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    @Tag("Push")
+    @DisplayName("Lines split across buffers give the same playlist and events, whatever the size of the buffers")
+    public void splitLines() {
+        byte[] bytes = playlist.getBytes(UTF_8);
+        var expected = PlaylistParser.parseBuffer.apply(ByteBuffer.wrap(bytes));
+        List<String> expectedEvents = null;
+        for (int size = 1; size <= bytes.length; size++) {
+            var events = new Events();
+            var subscriber = new PlaylistSubscriber(events);
+            var subscription = new Subscription();
+            subscriber.onSubscribe(subscription);
+            for (int from = 0; from < bytes.length; from += size) {
+                subscriber.onNext(List.of(ByteBuffer.wrap(bytes, from, Math.min(size, bytes.length - from)).slice()));
+            }
+            subscriber.onComplete();
+            assertThat("Buffers of " + size + " bytes", subscriber.getBody().toCompletableFuture().join(), is(expected));
+            if (expectedEvents == null) expectedEvents = events.events;
+            assertThat("Buffers of " + size + " bytes", events.events, is(expectedEvents));
+        }
+        assertThat(expectedEvents, is(List.of(
+                "1 tag EXTM3U null",
+                "2 tag EXT-X-TARGETDURATION 10",
+                "3 tag EXT-X-MEDIA-SEQUENCE 5",
+                "6 tag EXTINF 9.009 tvg-id=\"first\",Première",
+                "6 attribute tvg-id first",
+                "segment 5 http://media.example.com/first.ts",
+                "8 tag EXTINF 9.009,",
+                "segment 6 http://media.example.com/second.ts",
+                "10 tag EXTINF 3.003,",
+                "segment 7 http://media.example.com/third.ts",
+                "12 tag EXT-X-ENDLIST null"
+        )));
+    }
+
+    @Test
+    @Tag("Push")
+    @DisplayName("Only the lines split across buffers are copied, the others are parsed in place")
+    public void parsedInPlace() {
+        byte[] bytes = playlist.getBytes(UTF_8);
+        int split = playlist.indexOf("TARGETDURATION");
+        var subscriber = new PlaylistSubscriber(new Events());
+        subscriber.onSubscribe(new Subscription());
+        subscriber.onNext(List.of(ByteBuffer.wrap(bytes, 0, split).slice()));
+        subscriber.onNext(List.of(ByteBuffer.wrap(bytes, split, bytes.length - split).slice()));
+        subscriber.onComplete();
+        assertThat(subscriber.getBody().toCompletableFuture().join(), is(PlaylistParser.parseBuffer.apply(ByteBuffer.wrap(bytes))));
+        assertThat(subscriber.copied(), is((long) ("#EXT-X-TARGETDURATION:10\r\n".length() + "#EXT-X-ENDLIST".length())));
+    }
+
+    @Test
+    @Tag("Push")
+    @DisplayName("Segments are reported as soon as their lines have been received")
+    public void firstSegment() {
+        byte[] bytes = playlist.getBytes(UTF_8);
+        int end = playlist.indexOf("second.ts");
+        var events = new Events();
+        var subscriber = new PlaylistSubscriber(events);
+        var subscription = new Subscription();
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(List.of(ByteBuffer.wrap(bytes, 0, end).slice()));
+        assertThat(events.events.contains("segment 5 http://media.example.com/first.ts"), is(true));
+        assertThat(subscription.requested, is(2L));
+        assertThat(subscriber.getBody().toCompletableFuture().isDone(), is(false));
+    }
+
+    @Test
+    @Tag("Push")
+    @DisplayName("The first error cancels the download")
+    public void error() {
+        var subscriber = new PlaylistSubscriber(new Events());
+        var subscription = new Subscription();
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(List.of(ByteBuffer.wrap("#EXTM3U\nhttp://media.example.com/first.ts\n".getBytes(UTF_8))));
+        assertThat(subscription.cancelled, is(true));
+        Throwable exception = assertThrows(CompletionException.class, () -> subscriber.getBody().toCompletableFuture().join());
+        assertThat(exception.getCause().getMessage(), is("Line 2 : a URI must follow either an EXTINF or an EXT-X-STREAM-INF tag"));
+    }
+
+    @Test
+    @Tag("URL")
+    @DisplayName("The variants of a downloaded master playlist are reported with their attributes")
+    public void fromURIAsync() {
+        var events = new Events();
+        var playlist = PlaylistReader.fromURIAsync.apply(events).apply(URI.create("http://localhost:8093/playlist/master.m3u8")).join();
+        assertThat(((MasterPlaylist) playlist).variants().size(), is(4));
+        assertThat(events.events.stream().filter(event -> event.startsWith("variant")).count(), is(4L));
+        assertThat(events.events.contains("2 attribute BANDWIDTH 1280000"), is(true));
+    }
+
+}
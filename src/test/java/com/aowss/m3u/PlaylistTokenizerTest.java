@@ -0,0 +1,73 @@
+package com.aowss.m3u;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.MalformedInputException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Byte level tokenization of playlists")
+public class PlaylistTokenizerTest {
+
+    static String[] validPlaylists              = { "sample.m3u", "live.m3u8", "master.m3u8", "with-blank-lines.m3u", "with-comment-lines.m3u", "tv_channels_UBPMPAN7T_plus.m3u", "vget-1.m3u" };
+    static String[] invalidPlaylists            = { "utf8-with-bom.m3u", "control-character.m3u", "not-nfc-normalized.m3u", "no-extm3u.m3u", "sample.m4u" };
+
+    @Test
+    @Tag("Bytes")
+    @DisplayName("Reading a memory-mapped file gives the same playlist as reading its lines")
+    public void samePlaylist() throws URISyntaxException {
+        for (String resource : validPlaylists) {
+            Path path = Paths.get(getClass().getClassLoader().getResource(resource).toURI());
+            assertThat(resource, PlaylistReader.fromMappedFile.apply(path), is(PlaylistReader.fromFile.apply(path)));
+        }
+    }
+
+    @Test
+    @Tag("Bytes")
+    @DisplayName("Reading a memory-mapped file reports the same errors as reading its lines")
+    public void sameErrors() throws URISyntaxException {
+        for (String resource : invalidPlaylists) {
+            Path path = Paths.get(getClass().getClassLoader().getResource(resource).toURI());
+            Throwable expected = assertThrows(RuntimeException.class, () -> PlaylistReader.fromFile.apply(path));
+            Throwable exception = assertThrows(RuntimeException.class, () -> PlaylistReader.fromMappedFile.apply(path));
+            assertThat(resource, exception.getMessage(), is(expected.getMessage()));
+        }
+    }
+
+    @Test
+    @Tag("Bytes")
+    @DisplayName("Playlist files MUST be encoded in UTF-8")
+    public void isUTF8Encoded() throws URISyntaxException {
+        Path path = Paths.get(getClass().getClassLoader().getResource("not-utf8.m3u").toURI());
+        Throwable exception = assertThrows(UncheckedIOException.class, () -> PlaylistReader.fromMappedFile.apply(path));
+        assertThat(exception.getCause(), Matchers.instanceOf(MalformedInputException.class));
+    }
+
+    @Test
+    @Tag("Bytes")
+    @DisplayName("Lines are terminated by either LF or CR LF")
+    public void lineTerminators() {
+        var tokenizer = new PlaylistTokenizer(ByteBuffer.wrap("#EXTM3U\r\n#EXT-X-VERSION:3\n\nfirst.ts".getBytes(UTF_8)));
+        assertThat(tokenizer.next(), is(true));
+        assertThat(tokenizer.toString(), is("#EXTM3U"));
+        assertThat(tokenizer.next(), is(true));
+        assertThat(tokenizer.lineNumber(), is(2L));
+        assertThat(tokenizer.subSequence(1, 4), is("EXT"));
+        assertThat(tokenizer.next(), is(true));
+        assertThat(tokenizer.lineNumber(), is(4L));
+        assertThat(tokenizer.toString(), is("first.ts"));
+        assertThat(tokenizer.next(), is(false));
+    }
+
+}
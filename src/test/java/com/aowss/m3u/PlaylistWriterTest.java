@@ -0,0 +1,136 @@
+package com.aowss.m3u;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Writing playlists back to https://tools.ietf.org/html/rfc8216")
+public class PlaylistWriterTest {
+
+    static String[] playlists                   = { "sample.m3u", "live.m3u8", "master.m3u8", "master-with-renditions.m3u8", "with-comment-lines.m3u", "tv_channels_UBPMPAN7T_plus.m3u" };
+
+    @Test
+    @Tag("Writer")
+    @DisplayName("Parsing a written playlist gives back the same playlist")
+    public void roundTrip() throws URISyntaxException {
+        var writer = new PlaylistWriter(1024);
+        for (String resource : playlists) {
+            Path path = Paths.get(getClass().getClassLoader().getResource(resource).toURI());
+            var playlist = PlaylistReader.fromFile.apply(path);
+            var copy = PlaylistParser.parse.apply(writer.toString(playlist).lines());
+            switch (playlist) {
+                case MediaPlaylist media -> {
+                    var mediaCopy = (MediaPlaylist) copy;
+                    assertThat(resource, mediaCopy.targetDuration(), is(media.targetDuration()));
+                    assertThat(resource, mediaCopy.mediaSequence(), is(media.mediaSequence()));
+                    assertThat(resource, mediaCopy.endList(), is(media.endList()));
+                    assertThat(resource, mediaCopy.segments(), is(media.segments()));
+                }
+                case MasterPlaylist master -> {
+                    assertThat(resource, ((MasterPlaylist) copy).variants(), is(master.variants()));
+                    assertThat(resource, ((MasterPlaylist) copy).renditions(), is(master.renditions()));
+                }
+            }
+        }
+    }
+
+    @Test
+    @Tag("Writer")
+    @DisplayName("A Media Playlist is written as its tags followed by its segments")
+    public void mediaPlaylist() throws URISyntaxException {
+        var segment = new MediaSegment(9.009f, Map.of(), "first", new URI("http://media.example.com/first.ts"));
+        var playlist = new MediaPlaylist(0, 10, 0, true, List.of(segment, new MediaSegment(-1, Map.of("tvg-id", ""), "", new URI("second.ts"))));
+        var output = new ByteArrayOutputStream();
+        new PlaylistWriter().write(playlist, output);
+        assertThat(output.toString(UTF_8), is("""
+                #EXTM3U
+                #EXT-X-VERSION:3
+                #EXT-X-TARGETDURATION:10
+                #EXTINF:9.009,first
+                http://media.example.com/first.ts
+                #EXTINF:-1 tvg-id="",
+                second.ts
+                #EXT-X-ENDLIST
+                """));
+    }
+
+    @Test
+    @Tag("Writer")
+    @DisplayName("Playlists with fractional durations or frame rates are written as version 3")
+    public void version() throws URISyntaxException {
+        var writer = new PlaylistWriter();
+        var whole = new MediaPlaylist(0, 10, 0, false, List.of(new MediaSegment(10, Map.of(), "", new URI("whole.ts"))));
+        assertThat(writer.toString(whole), is("#EXTM3U\n#EXT-X-TARGETDURATION:10\n#EXTINF:10,\nwhole.ts\n"));
+        var variant = new VariantStream(1280000, 0, null, null, 29.97, null, null, null, null, null, new URI("low.m3u8"));
+        assertThat(writer.toString(new MasterPlaylist(0, List.of(variant))), is("#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-STREAM-INF:BANDWIDTH=1280000,FRAME-RATE=29.97\nlow.m3u8\n"));
+    }
+
+    @Test
+    @Tag("Writer")
+    @DisplayName("Decimal-floating-point numbers are written without exponent")
+    public void noExponent() throws URISyntaxException {
+        var writer = new PlaylistWriter();
+        var small = new MediaPlaylist(0, 1, 0, false, List.of(new MediaSegment(0.0001f, Map.of(), "", new URI("small.ts"))));
+        assertThat(writer.toString(small), is("#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-TARGETDURATION:1\n#EXTINF:0.0001,\nsmall.ts\n"));
+        var slow = new VariantStream(1280000, 0, null, null, 0.00025, null, null, null, null, null, new URI("slow.m3u8"));
+        var fast = new VariantStream(2560000, 0, null, null, 12345678.5, null, null, null, null, null, new URI("fast.m3u8"));
+        assertThat(writer.toString(new MasterPlaylist(0, List.of(slow, fast))), is("#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-STREAM-INF:BANDWIDTH=1280000,FRAME-RATE=0.00025\nslow.m3u8\n#EXT-X-STREAM-INF:BANDWIDTH=2560000,FRAME-RATE=12345678.5\nfast.m3u8\n"));
+    }
+
+    @Test
+    @Tag("Writer")
+    @DisplayName("The discontinuities, byte ranges, dates and gaps of a SegmentStore are written back")
+    public void columns() {
+        var playlist = (MediaPlaylist) PlaylistLoader.builder().columnar(true).build().parse(SegmentStoreTest.event.lines());
+        String written = new PlaylistWriter().toString(playlist);
+        assertThat(written.lines().toList().get(1), is("#EXT-X-VERSION:4"));
+        var copy = (MediaPlaylist) PlaylistLoader.builder().columnar(true).build().parse(written.lines());
+        assertThat(SegmentStoreTest.columns((SegmentStore) copy.segments()), is(SegmentStoreTest.columns((SegmentStore) playlist.segments())));
+        assertThat(written.lines().filter(line -> line.startsWith("#EXT-X-PROGRAM-DATE-TIME:")).count(), is(2L));
+    }
+
+    @Test
+    @Tag("Writer")
+    @DisplayName("Segments that were already written are not rendered again")
+    public void renderedOnce() throws URISyntaxException {
+        var writer = new PlaylistWriter();
+        var tracker = new LivePlaylistTracker(new URI("http://localhost/live.m3u8"));
+        var playlist = tracker.refresh(Stream.of("#EXTM3U", "#EXT-X-TARGETDURATION:8", "#EXTINF:8,", "segment0.ts", "#EXTINF:8,", "segment1.ts")).playlist();
+        writer.toString(playlist);
+        var next = tracker.refresh(Stream.of("#EXTM3U", "#EXT-X-TARGETDURATION:8", "#EXTINF:8,", "segment0.ts", "#EXTINF:8,", "segment1.ts", "#EXTINF:8,", "segment2.ts")).playlist();
+        assertThat(writer.toString(next), is("#EXTM3U\n#EXT-X-TARGETDURATION:8\n#EXTINF:8,\nsegment0.ts\n#EXTINF:8,\nsegment1.ts\n#EXTINF:8,\nsegment2.ts\n"));
+        assertThat(writer.rendered(), is(1));
+        //  Equal segments of another playlist aren't looked up by value
+        writer.toString(PlaylistParser.parse.apply(Stream.of("#EXTM3U", "#EXT-X-TARGETDURATION:8", "#EXTINF:8,", "segment0.ts")));
+        assertThat(writer.rendered(), is(1));
+    }
+
+    @Test
+    @Tag("Writer")
+    @DisplayName("Lines longer than the buffer are written in several parts")
+    public void smallBuffer() throws URISyntaxException {
+        for (String resource : playlists) {
+            Path path = Paths.get(getClass().getClassLoader().getResource(resource).toURI());
+            Playlist playlist = PlaylistReader.fromFile.apply(path);
+            assertThat(resource, new PlaylistWriter(16).toString(playlist), is(new PlaylistWriter().toString(playlist)));
+        }
+        var columnar = (MediaPlaylist) PlaylistLoader.builder().columnar(true).build().parse(SegmentStoreTest.event.lines());
+        assertThat(new PlaylistWriter(1).toString(columnar), is(new PlaylistWriter().toString(columnar)));
+        assertThrows(RuntimeException.class, () -> new PlaylistWriter(0));
+    }
+
+}
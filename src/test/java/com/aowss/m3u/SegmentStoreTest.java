@@ -0,0 +1,120 @@
+package com.aowss.m3u;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Segments stored column by column")
+public class SegmentStoreTest {
+
+    static String[] validPlaylists              = { "sample.m3u", "live.m3u8", "master.m3u8", "with-blank-lines.m3u", "with-comment-lines.m3u", "tv_channels_UBPMPAN7T_plus.m3u", "vget-1.m3u" };
+
+    static String event = """
+            #EXTM3U
+            #EXT-X-TARGETDURATION:10
+            #EXT-X-MEDIA-SEQUENCE:100
+            #EXT-X-PROGRAM-DATE-TIME:2010-02-19T14:54:23.031+08:00
+            #EXTINF:10,
+            #EXT-X-BYTERANGE:75232@0
+            media.ts
+            #EXTINF:9.5,
+            #EXT-X-BYTERANGE:82112
+            media.ts
+            #EXT-X-DISCONTINUITY
+            #EXTINF:10,
+            ad.ts
+            #EXT-X-GAP
+            #EXTINF:10,
+            missing.ts
+            #EXT-X-DISCONTINUITY
+            #EXT-X-PROGRAM-DATE-TIME:2010-02-19T14:55:00Z
+            #EXTINF:4,
+            last.ts
+            """;
+
+    @Test
+    @Tag("Columns")
+    @DisplayName("A playlist stored in columns is the same as a playlist made of segments")
+    public void samePlaylist() throws URISyntaxException {
+        for (String resource : validPlaylists) {
+            Path path = Paths.get(getClass().getClassLoader().getResource(resource).toURI());
+            assertThat(resource, PlaylistReader.fromMappedFileWith.apply(PlaylistLoader.builder().columnar(true).build()::parse).apply(path), is(PlaylistReader.fromMappedFile.apply(path)));
+        }
+    }
+
+    @Test
+    @Tag("Columns")
+    @DisplayName("The media segment tags preceding a URI apply to its segment")
+    public void mediaSegmentTags() {
+        var playlist = (MediaPlaylist) PlaylistLoader.builder().columnar(true).build().parse(event.lines());
+        assertThat(playlist.segments(), instanceOf(SegmentStore.class));
+        var store = (SegmentStore) playlist.segments();
+        assertThat(store, is(((MediaPlaylist) PlaylistParser.parseBuffer.apply(ByteBuffer.wrap(event.getBytes(UTF_8)))).segments()));
+        assertThat(store.sequenceNumber(0), is(100L));
+        assertThat(store.sequenceNumber(4), is(104L));
+        assertThat(store.byteRangeLength(0), is(75232L));
+        assertThat(store.byteRangeOffset(0), is(0L));
+        assertThat(store.byteRangeOffset(1), is(75232L));
+        assertThat(store.byteRangeLength(2), is(SegmentStore.UNKNOWN));
+        long start = OffsetDateTime.parse("2010-02-19T14:54:23.031+08:00").toInstant().toEpochMilli();
+        assertThat(store.programDateTime(0), is(start));
+        assertThat(store.programDateTime(1), is(start + 10_000));
+        assertThat(store.programDateTime(2), is(SegmentStore.UNKNOWN));
+        assertThat(store.programDateTime(4), is(OffsetDateTime.parse("2010-02-19T14:55:00Z").toInstant().toEpochMilli()));
+        assertThat(store.discontinuity(2), is(true));
+        assertThat(store.gap(3), is(true));
+        assertThat(store.gap(2), is(false));
+        assertThat(store.nextDiscontinuity(3), is(4));
+        assertThat(store.duration(), closeTo(43.5, 0.0001));
+        assertThat(store.duration(1, 3), closeTo(19.5, 0.0001));
+        assertThat(store.indexAtDateTime(start + 12_000), is(1));
+        assertThat(store.indexAtDateTime(start - 1), is(-1));
+    }
+
+    //  Everything a store knows about each of its segments, for comparing stores
+    static List<List<Object>> columns(SegmentStore store) {
+        List<List<Object>> columns = new ArrayList<>();
+        for (int i = 0; i < store.size(); i++) {
+            columns.add(List.of(store.get(i), store.sequenceNumber(i), store.discontinuity(i), store.gap(i), store.byteRangeLength(i), store.byteRangeOffset(i), store.programDateTime(i)));
+        }
+        return columns;
+    }
+
+    @Test
+    @Tag("Columns")
+    @DisplayName("A malformed media segment tag is reported to the diagnostics and leaves the segment without its value")
+    public void lenient() {
+        var loader = PlaylistLoader.builder().lenient(10).columnar(true).build();
+        var playlist = (MediaPlaylist) loader.parse(Stream.of("#EXTM3U", "#EXT-X-BYTERANGE:many@0", "#EXTINF:10,", "first.ts", "#EXT-X-PROGRAM-DATE-TIME:yesterday", "#EXTINF:10,", "second.ts"));
+        var store = (SegmentStore) playlist.segments();
+        assertThat(store.size(), is(2));
+        assertThat(store.byteRangeLength(0), is(SegmentStore.UNKNOWN));
+        assertThat(store.byteRangeOffset(0), is(SegmentStore.UNKNOWN));
+        assertThat(store.programDateTime(1), is(SegmentStore.UNKNOWN));
+        assertThat(loader.diagnostics().stream().map(Diagnostics.Diagnostic::rule).toList(), is(List.of(Diagnostics.Rule.MALFORMED_TAG, Diagnostics.Rule.MALFORMED_TAG)));
+        assertThat(loader.diagnostics().get(0).lineNumber(), is(2L));
+    }
+
+    @Test
+    @Tag("Columns")
+    @DisplayName("The EXT-X-PROGRAM-DATE-TIME tag value must be a date-time with a time zone")
+    public void invalidDateTime() {
+        Throwable exception = assertThrows(RuntimeException.class, () -> PlaylistLoader.builder().columnar(true).build().parse(Stream.of("#EXTM3U", "#EXT-X-PROGRAM-DATE-TIME:yesterday", "#EXTINF:10,", "first.ts")));
+        assertThat(exception.getMessage(), is("Line 2 : the program date time must be an ISO 8601 date-time with a time zone"));
+    }
+
+}
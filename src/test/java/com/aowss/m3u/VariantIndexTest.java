@@ -0,0 +1,106 @@
+package com.aowss.m3u;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@DisplayName("Variant selection from https://tools.ietf.org/html/rfc8216#section-4.3.4")
+public class VariantIndexTest {
+
+    static String master                        = "master-with-renditions.m3u8";
+
+    private MasterPlaylist master() throws URISyntaxException {
+        Path path = Paths.get(getClass().getClassLoader().getResource(master).toURI());
+        return (MasterPlaylist) PlaylistReader.fromFile.apply(path);
+    }
+
+    @Test
+    @Tag("Master")
+    @DisplayName("The EXT-X-MEDIA tag is used to relate Media Playlists that contain alternative Renditions of the same content")
+    public void renditions() throws URISyntaxException {
+        var playlist = master();
+        assertThat(playlist.variants().size(), is(6));
+        assertThat(playlist.renditions().size(), is(5));
+        var french = playlist.renditions().get(1);
+        assertThat(french.type(), is("AUDIO"));
+        assertThat(french.groupId(), is("aac"));
+        assertThat(french.name(), is("Français"));
+        assertThat(french.language(), is("fr"));
+        assertThat(french.defaultRendition(), is(false));
+        assertThat(french.autoselect(), is(true));
+        assertThat(french.uri(), is(new URI("audio/fr/stereo.m3u8")));
+        assertThat(playlist.renditions().get(4).instreamId(), is("CC1"));
+        assertThat(playlist.renditions().get(4).uri(), is(nullValue()));
+    }
+
+    @Test
+    @Tag("Master")
+    @DisplayName("The best variant is the one with the highest bandwidth that doesn't exceed the available one")
+    public void bestUnder() throws URISyntaxException {
+        var index = new VariantIndex(master());
+        assertThat(index.bestUnder(799_999), is(nullValue()));
+        assertThat(index.bestUnder(800_000).uri(), is(new URI("avc/270.m3u8")));
+        assertThat(index.bestUnder(3_000_000).uri(), is(new URI("hevc/720-pq.m3u8")));
+        assertThat(index.bestUnder(Long.MAX_VALUE).uri(), is(new URI("avc/1080.m3u8")));
+        assertThat(index.all().lowest().uri(), is(new URI("avc/270.m3u8")));
+    }
+
+    @Test
+    @Tag("Master")
+    @DisplayName("Variants are grouped by codecs and video range, a missing VIDEO-RANGE being SDR")
+    public void groups() throws URISyntaxException {
+        var index = new VariantIndex(master());
+        assertThat(index.groups().size(), is(4));
+        var hdr = index.group("hvc1.2.4.L123.B0,ec-3", "PQ");
+        assertThat(hdr.variants().size(), is(3));
+        assertThat(hdr.bestUnder(4_000_000).uri(), is(new URI("hevc/720-pq.m3u8")));
+        assertThat(hdr.bestUnder(10_000_000).uri(), is(new URI("hevc/1080-pq.m3u8")));
+        assertThat(index.group("avc1.640020,mp4a.40.2", null), is(index.group("avc1.640020,mp4a.40.2", "SDR")));
+        assertThat(index.group("avc1.640020,mp4a.40.2", "PQ"), is(nullValue()));
+        assertThat(index.group("vp09", null), is(nullValue()));
+    }
+
+    @Test
+    @Tag("Master")
+    @DisplayName("The AUDIO, SUBTITLES and CLOSED-CAPTIONS attributes refer to groups of renditions")
+    public void resolved() throws URISyntaxException {
+        var index = new VariantIndex(master());
+        var hd = index.bestUnder(Long.MAX_VALUE);
+        assertThat(index.audio(hd).size(), is(1));
+        assertThat(index.audio(hd).get(0).channels(), is("6"));
+        assertThat(index.audio(index.bestUnder(800_000)).size(), is(2));
+        assertThat(index.subtitles(hd).get(0).language(), is("en"));
+        assertThat(index.closedCaptions(hd).get(0).instreamId(), is("CC1"));
+        assertThat(index.closedCaptions(index.group("hvc1.2.4.L123.B0,ec-3", "PQ").lowest()).isEmpty(), is(true));
+        assertThat(index.video(hd).isEmpty(), is(true));
+    }
+
+    @Test
+    @Tag("Master")
+    @DisplayName("Selecting a variant doesn't allocate")
+    public void noAllocation() throws URISyntaxException {
+        var index = new VariantIndex(master());
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        long found = 0;
+        for (int i = 0; i < 100_000; i++) found += index.bestUnder(i * 100L) == null ? 0 : 1;
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 100_000; i++) {
+            var variant = index.bestUnder(i * 100L);
+            if (variant != null) found += index.audio(variant).size() + (index.group(variant.codecs(), variant.videoRange()) == null ? 0 : 1);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertThat(found, greaterThan(0L));
+        assertThat(allocated, lessThan(100_000L));
+    }
+
+}